@@ -0,0 +1,24 @@
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class Main {
+    /**
+     * Runs the chess benchmarks with the GC profiler attached so every result
+     * reports allocation rate next to throughput. Accepts the usual JMH command
+     * line options, e.g. a benchmark name regex or -f/-wi/-i overrides.
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        var options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class);
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include("benchmark\\..*");
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,35 @@
+package benchmark;
+
+import chess.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessBoardBenchmark {
+
+    private ChessBoard board;
+    private ChessBoard middlegame;
+
+    @Setup
+    public void setup() {
+        board = new ChessBoard();
+        middlegame = Positions.middlegame().getBoard();
+    }
+
+    @Benchmark
+    public ChessBoard resetBoard() {
+        board.resetBoard();
+        return board;
+    }
+
+    @Benchmark
+    public ChessBoard copy() {
+        return new ChessBoard(middlegame);
+    }
+}
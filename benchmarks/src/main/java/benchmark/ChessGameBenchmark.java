@@ -0,0 +1,83 @@
+package benchmark;
+
+import chess.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessGameBenchmark {
+
+    private ChessGame middlegame;
+    private ChessGame checkmate;
+    private ChessGame stalemate;
+    private ChessPosition knight;
+    private ChessMove knightMove;
+
+    @Setup
+    public void setup() {
+        middlegame = Positions.middlegame();
+        checkmate = Positions.checkmate();
+        stalemate = Positions.stalemate();
+        knight = ChessPosition.of(3, 6);
+        knightMove = Positions.move("f3g5");
+    }
+
+    @Benchmark
+    public Collection<ChessMove> validMovesKnight() {
+        return middlegame.validMoves(knight);
+    }
+
+    @Benchmark
+    public int validMovesAllPieces() {
+        int count = 0;
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition position = ChessPosition.of(row, col);
+                ChessPiece piece = middlegame.getBoard().getPiece(position);
+                if (piece != null && piece.getTeamColor() == middlegame.getTeamTurn()) {
+                    count += middlegame.validMoves(position).size();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Plays one move through the full legality check, then takes it back so
+     * every invocation starts from the same position.
+     */
+    @Benchmark
+    public ChessGame makeMove() throws InvalidMoveException {
+        middlegame.makeMove(knightMove);
+        middlegame.getBoard().unmakeMove();
+        middlegame.setTeamTurn(ChessGame.TeamColor.WHITE);
+        return middlegame;
+    }
+
+    @Benchmark
+    public boolean isInCheckmate() {
+        return checkmate.isInCheckmate(ChessGame.TeamColor.WHITE);
+    }
+
+    @Benchmark
+    public boolean isInCheckmateNotMated() {
+        return middlegame.isInCheckmate(ChessGame.TeamColor.WHITE);
+    }
+
+    @Benchmark
+    public boolean isInStalemate() {
+        return stalemate.isInStalemate(ChessGame.TeamColor.BLACK);
+    }
+
+    @Benchmark
+    public boolean isInStalemateNotStalemated() {
+        return middlegame.isInStalemate(ChessGame.TeamColor.WHITE);
+    }
+}
@@ -0,0 +1,61 @@
+package benchmark;
+
+import chess.*;
+
+/**
+ * Positions shared by the benchmarks, built through the public game API.
+ */
+final class Positions {
+
+    private Positions() {
+    }
+
+    /**
+     * @return a developed middlegame reached from the start position, white to move
+     */
+    static ChessGame middlegame() {
+        return play(new ChessGame(),
+                "e2e4", "e7e5", "g1f3", "b8c6", "f1c4", "f8c5", "c2c3", "g8f6",
+                "d2d3", "d7d6", "b1d2", "a7a6", "c4b3", "c8e6");
+    }
+
+    /**
+     * @return fool's mate, white checkmated and to move
+     */
+    static ChessGame checkmate() {
+        return play(new ChessGame(), "f2f3", "e7e5", "g2g4", "d8h4");
+    }
+
+    /**
+     * @return black king on h8 with no moves and not in check, black to move
+     */
+    static ChessGame stalemate() {
+        ChessBoard board = new ChessBoard();
+        board.addPiece(ChessPosition.of(8, 8), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        board.addPiece(ChessPosition.of(7, 6), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
+        board.addPiece(ChessPosition.of(1, 6), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        ChessGame game = new ChessGame();
+        game.setBoard(board);
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        return game;
+    }
+
+    static ChessMove move(String text) {
+        return ChessMove.of(square(text, 0), square(text, 2), null);
+    }
+
+    private static ChessPosition square(String text, int offset) {
+        return ChessPosition.of(text.charAt(offset + 1) - '0', text.charAt(offset) - 'a' + 1);
+    }
+
+    private static ChessGame play(ChessGame game, String... moves) {
+        try {
+            for (String move : moves) {
+                game.makeMove(move(move));
+            }
+        } catch (InvalidMoveException e) {
+            throw new IllegalStateException("Benchmark opening contains an illegal move", e);
+        }
+        return game;
+    }
+}
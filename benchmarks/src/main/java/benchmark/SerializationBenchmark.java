@@ -0,0 +1,41 @@
+package benchmark;
+
+import chess.ChessGame;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private final Gson gson = new Gson();
+    private ChessGame game;
+    private String json;
+
+    @Setup
+    public void setup() {
+        game = Positions.middlegame();
+        json = gson.toJson(game);
+    }
+
+    @Benchmark
+    public String gsonEncode() {
+        return gson.toJson(game);
+    }
+
+    @Benchmark
+    public ChessGame gsonDecode() {
+        return gson.fromJson(json, ChessGame.class);
+    }
+
+    @Benchmark
+    public ChessGame gsonRoundTrip() {
+        return gson.fromJson(gson.toJson(game), ChessGame.class);
+    }
+}
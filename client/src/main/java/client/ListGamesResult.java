@@ -4,8 +4,14 @@ import java.util.List;
 
 public class ListGamesResult {
     private List<GameInfo> games;
+    private Integer nextAfterGameId;
 
     public List<GameInfo> games() {
         return games;
     }
+
+    //cursor for the next page, or null if this is the last one
+    public Integer nextAfterGameId() {
+        return nextAfterGameId;
+    }
 }
@@ -43,10 +43,25 @@ public class ServerFacade {
         delete("/session", authToken);
     }
 
+    //every game, since the server does not page a request with no cursor or limit
     public List<GameInfo> listGames(String authToken) throws IOException {
-        String response = get("/game", authToken);
-        ListGamesResult result = gson.fromJson(response, ListGamesResult.class);
-        return result.games();
+        return listGames(authToken, null, null).games();
+    }
+
+    //one page of games after the afterGameId cursor; either argument may be null for the server default,
+    //and with both null the server lists every game
+    public ListGamesResult listGames(String authToken, Integer afterGameId, Integer limit) throws IOException {
+        StringBuilder path = new StringBuilder("/game");
+        char separator = '?';
+        if (afterGameId != null) {
+            path.append(separator).append("afterGameId=").append(afterGameId);
+            separator = '&';
+        }
+        if (limit != null) {
+            path.append(separator).append("limit=").append(limit);
+        }
+        String response = get(path.toString(), authToken);
+        return gson.fromJson(response, ListGamesResult.class);
     }
 
     public CreateGameResult createGame(String authToken, String gameName) throws IOException {
@@ -28,7 +28,7 @@ public class ChessBoardPrinter {
                 String bg = isLight ? EscapeSequences.SET_BG_COLOR_WHITE : EscapeSequences.SET_BG_COLOR_DARK_GREY;
                 int boardRow = row;
                 int boardCol = whitePerspective ? colIndex + 1 : 8 - colIndex;
-                ChessPiece piece = board.getPiece(new ChessPosition(boardRow, boardCol));
+                ChessPiece piece = board.getPiece(ChessPosition.of(boardRow, boardCol));
                 String symbol = pieceToSymbol(piece);
                 System.out.print(bg + symbol + EscapeSequences.RESET_BG_COLOR);
             }
@@ -128,6 +128,34 @@ public class ServerFacadeTests {
         assertTrue(ex.getMessage().toLowerCase().contains("unauthorized"));
     }
 
+    @Test
+    void listGamesPagedPositive() throws Exception {
+        var reg = serverFacade.register("user7", "pass7", "user7@email.com");
+        for (int i = 1; i <= 5; i++) {
+            serverFacade.createGame(reg.authToken(), "paged" + i);
+        }
+        ListGamesResult first = serverFacade.listGames(reg.authToken(), null, 2);
+        assertEquals(2, first.games().size());
+        assertEquals("paged1", first.games().get(0).gameName());
+        assertNotNull(first.nextAfterGameId());
+
+        ListGamesResult second = serverFacade.listGames(reg.authToken(), first.nextAfterGameId(), 2);
+        assertEquals("paged3", second.games().get(0).gameName());
+        ListGamesResult last = serverFacade.listGames(reg.authToken(), second.nextAfterGameId(), 2);
+        assertEquals(1, last.games().size());
+        assertEquals("paged5", last.games().get(0).gameName());
+        assertNull(last.nextAfterGameId());
+    }
+
+    @Test
+    void listGamesPagedNegative() throws Exception {
+        var reg = serverFacade.register("user8", "pass8", "user8@email.com");
+        Exception ex = assertThrows(IOException.class, () ->
+                serverFacade.listGames(reg.authToken(), null, 0)
+        );
+        assertTrue(ex.getMessage().toLowerCase().contains("bad request"));
+    }
+
     // --- Join Game ---
 
     @Test
@@ -19,7 +19,18 @@ CREATE TABLE IF NOT EXISTS games (
     whiteUsername VARCHAR(255),
     blackUsername VARCHAR(255),
     gameName VARCHAR(255) NOT NULL,
-    game TEXT NOT NULL,
+    game BLOB NOT NULL,
+    snapshotPly INT NOT NULL DEFAULT 0,
+    ply INT NOT NULL DEFAULT 0,
+    version INT NOT NULL DEFAULT 0,
     FOREIGN KEY (whiteUsername) REFERENCES users(username) ON DELETE SET NULL,
     FOREIGN KEY (blackUsername) REFERENCES users(username) ON DELETE SET NULL
+    );
+
+CREATE TABLE IF NOT EXISTS moves (
+    gameID INT NOT NULL,
+    ply INT NOT NULL,
+    move SMALLINT NOT NULL,
+    playedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (gameID, ply)
     );
\ No newline at end of file
@@ -0,0 +1,173 @@
+package dataaccess;
+
+import chess.ChessMove;
+import model.AuthData;
+import model.GameData;
+import model.GameSummary;
+import model.UserData;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches auth lookups in front of another DataAccess; everything else passes straight through.
+ * <p>
+ * Tokens found are remembered for ttl, and tokens not found for negativeTtl, so
+ * repeated bogus tokens don't reach the database either. Logging in fills the
+ * cache and logging out replaces the entry with a not-found one at once, which
+ * also stops a lookup that was already in flight from bringing the token back.
+ * At most maxEntries tokens are kept; past that, expired entries go first and
+ * then arbitrary ones. Logouts made through another server are only seen once
+ * this server's entry expires.
+ */
+public class AuthCachingDataAccess implements DataAccess {
+
+    /**
+     * @param maxEntries        most tokens remembered at once
+     * @param ttlMillis         how long a token that exists is remembered
+     * @param negativeTtlMillis how long a token that doesn't exist is remembered
+     */
+    public record Settings(int maxEntries, long ttlMillis, long negativeTtlMillis) {
+        public static final Settings DEFAULTS = new Settings(10_000, 5 * 60_000, 30_000);
+    }
+
+    //auth is null for a token known not to exist
+    private record Cached(AuthData auth, long expiresAt) {
+        boolean expired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    private final DataAccess delegate;
+    private final Settings settings;
+    private final ConcurrentHashMap<String, Cached> auths = new ConcurrentHashMap<>();
+
+    public AuthCachingDataAccess(DataAccess delegate, Settings settings) {
+        this.delegate = delegate;
+        this.settings = settings;
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        if (authToken == null) {
+            return delegate.getAuth(null);
+        }
+        long now = System.currentTimeMillis();
+        Cached cached = auths.get(authToken);
+        if (cached != null && !cached.expired(now)) {
+            return cached.auth();
+        }
+        AuthData auth = delegate.getAuth(authToken);
+        Cached loaded = cache(auth, now);
+        //a login or logout that landed while we were reading wins over what we read
+        auths.compute(authToken, (token, current) ->
+                current == null || current.expired(now) ? loaded : current);
+        trim(now);
+        return auth;
+    }
+
+    @Override
+    public void insertAuth(AuthData auth) throws DataAccessException {
+        delegate.insertAuth(auth);
+        long now = System.currentTimeMillis();
+        auths.put(auth.authToken(), cache(auth, now));
+        trim(now);
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+        delegate.deleteAuth(authToken);
+        if (authToken != null) {
+            auths.put(authToken, cache(null, System.currentTimeMillis()));
+        }
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        delegate.clear();
+        auths.clear();
+    }
+
+    public int cachedAuths() {
+        return auths.size();
+    }
+
+    private Cached cache(AuthData auth, long now) {
+        return new Cached(auth, now + (auth != null ? settings.ttlMillis() : settings.negativeTtlMillis()));
+    }
+
+    //trims to 90% of the limit so a full cache isn't swept on every insert
+    private void trim(long now) {
+        if (auths.size() <= settings.maxEntries()) {
+            return;
+        }
+        auths.values().removeIf(cached -> cached.expired(now));
+        int target = settings.maxEntries() * 9 / 10;
+        Iterator<Cached> entries = auths.values().iterator();
+        while (auths.size() > target && entries.hasNext()) {
+            entries.next();
+            entries.remove();
+        }
+    }
+
+    @Override
+    public void insertUser(UserData user) throws DataAccessException {
+        delegate.insertUser(user);
+    }
+
+    @Override
+    public UserData getUser(String username) throws DataAccessException {
+        return delegate.getUser(username);
+    }
+
+    @Override
+    public boolean verifyUser(String username, String password) throws DataAccessException {
+        return delegate.verifyUser(username, password);
+    }
+
+    @Override
+    public int insertGame(GameData game) throws DataAccessException {
+        return delegate.insertGame(game);
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        return delegate.getGame(gameID);
+    }
+
+    @Override
+    public List<GameData> listGames() throws DataAccessException {
+        return delegate.listGames();
+    }
+
+    @Override
+    public List<GameSummary> listGameSummaries(int afterGameId, int limit) throws DataAccessException {
+        return delegate.listGameSummaries(afterGameId, limit);
+    }
+
+    @Override
+    public void updateGame(GameData game) throws DataAccessException {
+        delegate.updateGame(game);
+    }
+
+    @Override
+    public boolean updateGameIfVersion(GameData game, int expectedVersion) throws DataAccessException {
+        return delegate.updateGameIfVersion(game, expectedVersion);
+    }
+
+    @Override
+    public int appendMove(int gameID, ChessMove move) throws DataAccessException {
+        return delegate.appendMove(gameID, move);
+    }
+
+    @Override
+    public List<ChessMove> loadMoves(int gameID) throws DataAccessException {
+        return delegate.loadMoves(gameID);
+    }
+
+    @Override
+    public int moveCount(int gameID) throws DataAccessException {
+        return delegate.moveCount(gameID);
+    }
+}
@@ -0,0 +1,173 @@
+package dataaccess;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces single-row writes from many threads into JDBC batches.
+ * <p>
+ * Writes are queued and a single writer thread collects them until the batch is
+ * full or the oldest has waited the maximum delay, then runs each run of
+ * consecutive writes with the same SQL as one executeBatch, all in a single
+ * transaction. Writes keep their submission order. Each submitter gets a future
+ * that completes with its update count once the batch has committed, so a
+ * caller that waits on it sees the same durability as a direct executeUpdate.
+ * A driver that rewrites a batch into one statement may not know the count of
+ * each write, so writes whose callers decide anything from the count, such as
+ * conditional updates, should be run directly instead.
+ * If a batch fails, its writes are retried one at a time so one bad write only
+ * fails its own caller.
+ */
+public class BatchWriter implements AutoCloseable {
+
+    /**
+     * @param maxBatchSize   most writes sent in one batch
+     * @param maxDelayMillis longest a write waits for others to join its batch, 0 to only
+     *                       batch writes that queued up while the previous batch ran
+     */
+    public record Settings(int maxBatchSize, long maxDelayMillis) {
+    }
+
+    private record Write(String sql, Object[] params, CompletableFuture<Integer> result) {
+    }
+
+    private final ConnectionPool.ConnectionFactory connections;
+    private final Settings settings;
+    private final BlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    public BatchWriter(ConnectionPool.ConnectionFactory connections, Settings settings) {
+        if (settings.maxBatchSize() < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.connections = connections;
+        this.settings = settings;
+        this.writer = new Thread(this::run, "batch-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a write.
+     *
+     * @return the update count of the write once its batch has committed, or
+     * {@link Statement#SUCCESS_NO_INFO} if it succeeded but the driver did not report a count
+     */
+    public CompletableFuture<Integer> submit(String sql, Object... params) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        if (closed) {
+            result.completeExceptionally(new SQLException("Batch writer is closed"));
+            return result;
+        }
+        queue.add(new Write(sql, params, result));
+        return result;
+    }
+
+    /**
+     * Stops taking writes and flushes the ones already queued.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Write> batch = new ArrayList<>(settings.maxBatchSize());
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Write first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.maxDelayMillis());
+                while (batch.size() < settings.maxBatchSize()) {
+                    long remaining = deadline - System.nanoTime();
+                    Write next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                //only close() stops the writer, and it waits for the queue to drain
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Write> batch) {
+        try (Connection conn = connections.create()) {
+            int[] counts = new int[batch.size()];
+            try {
+                conn.setAutoCommit(false);
+                int start = 0;
+                while (start < batch.size()) {
+                    String sql = batch.get(start).sql();
+                    int end = start;
+                    while (end < batch.size() && batch.get(end).sql().equals(sql)) {
+                        end++;
+                    }
+                    try (var ps = conn.prepareStatement(sql)) {
+                        for (int i = start; i < end; i++) {
+                            bind(ps, batch.get(i).params());
+                            ps.addBatch();
+                        }
+                        System.arraycopy(ps.executeBatch(), 0, counts, start, end - start);
+                    }
+                    start = end;
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+                writeEach(conn, batch);
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                if (counts[i] == Statement.EXECUTE_FAILED) {
+                    batch.get(i).result().completeExceptionally(new SQLException("Batched write failed"));
+                } else {
+                    batch.get(i).result().complete(counts[i]);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            for (Write write : batch) {
+                write.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    private void writeEach(Connection conn, List<Write> batch) {
+        for (Write write : batch) {
+            try (var ps = conn.prepareStatement(write.sql())) {
+                bind(ps, write.params());
+                write.result().complete(ps.executeUpdate());
+            } catch (SQLException | RuntimeException e) {
+                write.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            ps.setObject(i + 1, params[i]);
+        }
+    }
+}
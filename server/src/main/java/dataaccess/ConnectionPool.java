@@ -0,0 +1,344 @@
+package dataaccess;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of JDBC connections.
+ * <p>
+ * At most maxSize connections exist at once; callers wait up to the borrow
+ * timeout for one to come free. Connections handed out are proxies whose close()
+ * returns the real connection to the pool, so callers keep using
+ * try-with-resources exactly as with DriverManager. A connection that has been
+ * idle for a moment is validated before it is handed out again, connections idle
+ * past the idle timeout are closed, and, if a leak threshold is set, connections
+ * held past it are reported along with where they were borrowed.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    //connections used this recently are assumed to still be alive
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    /**
+     * @param maxSize             most connections open at once
+     * @param borrowTimeoutMillis how long getConnection waits for a free connection
+     * @param idleTimeoutMillis   idle connections older than this are closed, 0 to keep them
+     * @param leakThresholdMillis connections held longer than this are reported, 0 to disable
+     */
+    public record Settings(int maxSize, long borrowTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis) {
+    }
+
+    /**
+     * A point-in-time view of the pool, with counters running since it was created.
+     */
+    public record Stats(int total, int active, int idle, int waiting, long created, long borrowed,
+                        long timeouts, long invalid, long evicted, long leaks) {
+    }
+
+    private final ConnectionFactory factory;
+    private final Settings settings;
+    private final Semaphore permits;
+    //most recently returned first, so the least used connections age out at the tail
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> inUse = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+
+    public ConnectionPool(ConnectionFactory factory, Settings settings) {
+        if (settings.maxSize() < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.factory = factory;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.maxSize(), true);
+
+        long period = housekeepingPeriod(settings);
+        if (period > 0) {
+            housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            housekeeper = null;
+        }
+    }
+
+    /**
+     * Borrows a connection, waiting for one to be returned if the pool is at its size.
+     * Closing the returned connection gives it back to the pool.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(settings.borrowTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Timed out after " + settings.borrowTimeoutMillis()
+                        + "ms waiting for a connection, " + stats());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = new PooledConnection(factory.create());
+                created.incrementAndGet();
+            }
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowSite = settings.leakThresholdMillis() > 0 ? new Throwable("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            inUse.add(pooled);
+            borrowed.incrementAndGet();
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public Stats stats() {
+        int idleCount;
+        synchronized (idle) {
+            idleCount = idle.size();
+        }
+        int active = inUse.size();
+        return new Stats(active + idleCount, active, idleCount, permits.getQueueLength(), created.get(),
+                borrowed.get(), timeouts.get(), invalid.get(), evicted.get(), leaks.get());
+    }
+
+    /**
+     * Closes idle connections and stops handing out new ones. Connections still in
+     * use are closed as they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (housekeeper != null) {
+            housekeeper.shutdownNow();
+        }
+        synchronized (idle) {
+            for (PooledConnection pooled : idle) {
+                closeQuietly(pooled.connection);
+            }
+            idle.clear();
+        }
+    }
+
+    //an idle connection that passed validation, or null if a new one is needed
+    private PooledConnection takeIdle() {
+        while (true) {
+            PooledConnection pooled;
+            synchronized (idle) {
+                pooled = idle.pollFirst();
+            }
+            if (pooled == null) {
+                return null;
+            }
+            if (isAlive(pooled)) {
+                return pooled;
+            }
+            invalid.incrementAndGet();
+            closeQuietly(pooled.connection);
+        }
+    }
+
+    private boolean isAlive(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastReturned < VALIDATION_BYPASS_MILLIS) {
+            return true;
+        }
+        try {
+            return pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        inUse.remove(pooled);
+        boolean reusable = !closed;
+        try {
+            //leave no transaction open for the next borrower
+            if (reusable && !pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+            reusable &= !pooled.connection.isClosed();
+        } catch (SQLException e) {
+            reusable = false;
+        }
+        if (reusable) {
+            pooled.lastReturned = System.currentTimeMillis();
+            synchronized (idle) {
+                idle.addFirst(pooled);
+            }
+        } else {
+            closeQuietly(pooled.connection);
+        }
+        permits.release();
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        evictIdle(now);
+        detectLeaks(now);
+    }
+
+    /**
+     * Closes connections that have sat idle longer than the idle timeout.
+     */
+    void evictIdle(long now) {
+        if (settings.idleTimeoutMillis() <= 0) {
+            return;
+        }
+        synchronized (idle) {
+            Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+            while (oldestFirst.hasNext()) {
+                PooledConnection pooled = oldestFirst.next();
+                if (now - pooled.lastReturned < settings.idleTimeoutMillis()) {
+                    break;
+                }
+                oldestFirst.remove();
+                evicted.incrementAndGet();
+                closeQuietly(pooled.connection);
+            }
+        }
+    }
+
+    /**
+     * Reports each connection held longer than the leak threshold, once per borrow.
+     */
+    void detectLeaks(long now) {
+        if (settings.leakThresholdMillis() <= 0) {
+            return;
+        }
+        for (PooledConnection pooled : inUse) {
+            if (!pooled.leakReported && now - pooled.borrowedAt > settings.leakThresholdMillis()) {
+                pooled.leakReported = true;
+                leaks.incrementAndGet();
+                System.err.println("Possible connection leak: held for " + (now - pooled.borrowedAt) + "ms, borrowed at "
+                        + borrower(pooled.borrowSite));
+            }
+        }
+    }
+
+    //the first frame outside the pool and DatabaseManager, which is the code holding the connection
+    private static String borrower(Throwable borrowSite) {
+        if (borrowSite != null) {
+            for (StackTraceElement frame : borrowSite.getStackTrace()) {
+                if (!frame.getClassName().equals(ConnectionPool.class.getName())
+                        && !frame.getClassName().equals(DatabaseManager.class.getName())) {
+                    return frame.toString();
+                }
+            }
+        }
+        return "unknown";
+    }
+
+    private static long housekeepingPeriod(Settings settings) {
+        long shortest = Long.MAX_VALUE;
+        if (settings.idleTimeoutMillis() > 0) {
+            shortest = settings.idleTimeoutMillis();
+        }
+        if (settings.leakThresholdMillis() > 0) {
+            shortest = Math.min(shortest, settings.leakThresholdMillis());
+        }
+        return shortest == Long.MAX_VALUE ? 0 : Math.max(shortest / 2, 100);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            //already unusable
+        }
+    }
+
+    private final class PooledConnection {
+        private final Connection connection;
+        private volatile long lastReturned = System.currentTimeMillis();
+        private volatile long borrowedAt;
+        private volatile Throwable borrowSite;
+        private volatile boolean leakReported;
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        //a fresh proxy per borrow, so a handle kept after close can't touch the next borrower's connection
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handle(this));
+        }
+    }
+
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned = false;
+
+        Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.connection;
+                default:
+                    if (returned) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    try {
+                        return method.invoke(pooled.connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
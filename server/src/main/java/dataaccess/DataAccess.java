@@ -1,7 +1,9 @@
 package dataaccess;
 
+import chess.ChessMove;
 import model.AuthData;
 import model.GameData;
+import model.GameSummary;
 import model.UserData;
 
 import java.util.List;
@@ -14,7 +16,40 @@ public interface DataAccess {
     int insertGame(GameData game) throws DataAccessException;
     GameData getGame(int gameID) throws DataAccessException;
     List<GameData> listGames() throws DataAccessException;
+
+    /**
+     * Lists games without loading their boards, in gameID order.
+     *
+     * @return at most limit games with a gameID greater than afterGameId
+     */
+    List<GameSummary> listGameSummaries(int afterGameId, int limit) throws DataAccessException;
     void updateGame(GameData game) throws DataAccessException;
+
+    /**
+     * Stores game, version included, only if the stored game's version is still expectedVersion.
+     * Logged moves count as changes, so each appended move also bumps the stored version.
+     *
+     * @return false if the game changed since expectedVersion and nothing was written
+     */
+    boolean updateGameIfVersion(GameData game, int expectedVersion) throws DataAccessException;
+
+    /**
+     * Records a move made in a game, after the moves already logged for it.
+     *
+     * @return the ply of the move, counting from 1
+     */
+    int appendMove(int gameID, ChessMove move) throws DataAccessException;
+
+    /**
+     * @return every move logged for the game, in the order they were made
+     */
+    List<ChessMove> loadMoves(int gameID) throws DataAccessException;
+
+    /**
+     * @return how many moves are logged for the game, without reading them
+     */
+    int moveCount(int gameID) throws DataAccessException;
+
     void insertAuth(AuthData auth) throws DataAccessException;
     AuthData getAuth(String authToken) throws DataAccessException;
     void deleteAuth(String authToken) throws DataAccessException;
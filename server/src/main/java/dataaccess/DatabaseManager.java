@@ -8,6 +8,9 @@ public class DatabaseManager {
     private static String dbUsername;
     private static String dbPassword;
     private static String connectionUrl;
+    private static String gameFormat;
+    private static ConnectionPool pool;
+    private static BatchWriter batchWriter;
 
     /*
      * Load the database information for the db.properties file.
@@ -30,10 +33,10 @@ public class DatabaseManager {
     }
 
     /**
-     * Create a connection to the database and sets the catalog based upon the
-     * properties specified in db.properties. Connections to the database should
-     * be short-lived, and you must close the connection when you are done with it.
-     * The easiest way to do that is with a try-with-resource block.
+     * Borrow a connection to the database from the pool, with the catalog set based
+     * upon the properties specified in db.properties. Connections to the database should
+     * be short-lived, and you must close the connection when you are done with it, which
+     * returns it to the pool. The easiest way to do that is with a try-with-resource block.
      * <br/>
      * <code>
      * try (var conn = DatabaseManager.getConnection()) {
@@ -43,15 +46,41 @@ public class DatabaseManager {
      */
     public static Connection getConnection() throws DataAccessException {
         try {
-            //do not wrap the following line with a try-with-resources
-            var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
-            conn.setCatalog(databaseName);
-            return conn;
+            return pool.getConnection();
         } catch (SQLException ex) {
             throw new DataAccessException("failed to get connection", ex);
         }
     }
 
+    /**
+     * Size, usage and counters of the connection pool behind getConnection.
+     */
+    public static ConnectionPool.Stats poolStats() {
+        return pool.stats();
+    }
+
+    /**
+     * The shared writer that batches small writes from concurrent requests.
+     */
+    static BatchWriter batchWriter() {
+        return batchWriter;
+    }
+
+    private static Connection openConnection() throws SQLException {
+        //do not wrap the following line with a try-with-resources
+        var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
+        conn.setCatalog(databaseName);
+        return conn;
+    }
+
+    /**
+     * How game state is stored in the games table, from the optional db.gameFormat
+     * property: "binary" (the default) or "fen".
+     */
+    static String gameFormat() {
+        return gameFormat;
+    }
+
     private static void loadPropertiesFromResources() {
         try (var propStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("db.properties")) {
             if (propStream == null) {
@@ -69,9 +98,26 @@ public class DatabaseManager {
         databaseName = props.getProperty("db.name");
         dbUsername = props.getProperty("db.user");
         dbPassword = props.getProperty("db.password");
+        gameFormat = props.getProperty("db.gameFormat", "binary");
 
         var host = props.getProperty("db.host");
         var port = Integer.parseInt(props.getProperty("db.port"));
-        connectionUrl = String.format("jdbc:mysql://%s:%d", host, port);
+        //server-side prepared statements cached per connection by the driver, and batched inserts sent as one statement
+        connectionUrl = String.format("jdbc:mysql://%s:%d?useServerPrepStmts=true&cachePrepStmts=true"
+                + "&prepStmtCacheSize=%s&prepStmtCacheSqlLimit=2048&rewriteBatchedStatements=true",
+                host, port, props.getProperty("db.statementCacheSize", "64"));
+
+        //optional pool tuning, defaults suit a single small server
+        var settings = new ConnectionPool.Settings(
+                Integer.parseInt(props.getProperty("db.pool.size", "10")),
+                Long.parseLong(props.getProperty("db.pool.timeoutMs", "30000")),
+                Long.parseLong(props.getProperty("db.pool.idleTimeoutMs", "600000")),
+                //leak reports cost a stack capture per borrow, so they are off unless asked for
+                Long.parseLong(props.getProperty("db.pool.leakThresholdMs", "0")));
+        pool = new ConnectionPool(DatabaseManager::openConnection, settings);
+        batchWriter = new BatchWriter(pool::getConnection, new BatchWriter.Settings(
+                Integer.parseInt(props.getProperty("db.batch.size", "100")),
+                //no added wait by default, so a lone write goes out at once and batches form only under load
+                Long.parseLong(props.getProperty("db.batch.delayMs", "0"))));
     }
 }
@@ -0,0 +1,514 @@
+package dataaccess;
+
+import chess.ChessMove;
+import chess.PackedMove;
+import chess.codec.GameCodec;
+import model.AuthData;
+import model.GameData;
+import model.GameSummary;
+import model.UserData;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Keeps everything in memory and logs each change to a memory-mapped file, for
+ * single-server deployments without MySQL.
+ * <p>
+ * State lives in a MemoryDataAccess, so reads never touch the disk. Every change
+ * is applied there and appended to log.dat, a fixed-size segment mapped into
+ * memory, so a write costs a few memory copies and survives the process dying;
+ * with syncWrites it is also forced to disk before returning. When the segment
+ * fills, on clear and on close, the whole state is written to snapshot.dat and
+ * the log starts over.
+ * <p>
+ * A snapshot writes each game as last logged, with the moves logged since, as
+ * MemoryDataAccess holds it.
+ * <p>
+ * Each file starts with an epoch that goes up with every snapshot, and each
+ * record carries a CRC over its bytes and that epoch. Recovery loads the
+ * snapshot, then replays log records until one fails its check, which is where
+ * the last write was cut off or where leftovers from an earlier epoch begin.
+ * Replayed moves go back into the move log, and MemoryDataAccess applies them
+ * when the game is read.
+ * <p>
+ * Changes are checked, logged, then applied, so a snapshot taken when the log
+ * fills mid-change never already holds the change being logged.
+ */
+public class FileDataAccess implements DataAccess, AutoCloseable {
+
+    /**
+     * @param directory    where snapshot.dat and log.dat are kept
+     * @param segmentBytes size of the mapped log, which bounds the changes between snapshots
+     * @param syncWrites   force each change to disk before returning, not just to the page cache
+     */
+    public record Settings(Path directory, int segmentBytes, boolean syncWrites) {
+        public static Settings defaults(Path directory) {
+            return new Settings(directory, 64 * 1024 * 1024, false);
+        }
+    }
+
+    private static final int MAGIC = 0x43484c47;
+    //magic, then epoch
+    private static final int HEADER_BYTES = 12;
+    //length and CRC ahead of each record
+    private static final int RECORD_OVERHEAD = 8;
+
+    private static final byte USER = 1;
+    private static final byte AUTH = 2;
+    private static final byte AUTH_DELETED = 3;
+    private static final byte GAME = 4;
+    //a move played, replayed onto its game
+    private static final byte MOVE = 5;
+    //moves a game record already includes, kept as history only
+    private static final byte HISTORY = 6;
+
+    //a game's last logged record and how many of its moves that record includes
+    private record GameLog(byte[] record, int ply) {
+    }
+
+    private final MemoryDataAccess memory = new MemoryDataAccess();
+    private final TreeMap<Integer, GameLog> gameLogs = new TreeMap<>();
+    private final Settings settings;
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final FileChannel logChannel;
+    private final MappedByteBuffer log;
+    private long epoch;
+    private int nextGameId = 1;
+    private boolean closed = false;
+
+    public FileDataAccess(Settings settings) throws DataAccessException {
+        this.settings = settings;
+        this.snapshotPath = settings.directory().resolve("snapshot.dat");
+        this.logPath = settings.directory().resolve("log.dat");
+        try {
+            Files.createDirectories(settings.directory());
+            epoch = loadSnapshot();
+            logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, settings.segmentBytes());
+        } catch (IOException e) {
+            throw new DataAccessException("Error: unable to open data files: " + e.getMessage());
+        }
+        if (log.getInt(0) == MAGIC && log.getLong(4) == epoch) {
+            replayLog();
+        } else {
+            //a new log, or one whose changes the snapshot already holds
+            resetLog();
+        }
+    }
+
+    @Override
+    public synchronized void clear() throws DataAccessException {
+        memory.clear();
+        gameLogs.clear();
+        nextGameId = 1;
+        compact();
+    }
+
+    @Override
+    public void insertUser(UserData user) throws DataAccessException {
+        if (user == null || user.username() == null) {
+            throw new DataAccessException("User or username is null");
+        }
+        //hashing is slow, so it happens before taking the log
+        UserData hashed = new UserData(user.username(), BCrypt.hashpw(user.password(), BCrypt.gensalt()),
+                user.email());
+        synchronized (this) {
+            if (memory.getUser(user.username()) != null) {
+                throw new DataAccessException("User already exists");
+            }
+            append(userRecord(hashed));
+            memory.insertUser(hashed);
+        }
+    }
+
+    @Override
+    public UserData getUser(String username) throws DataAccessException {
+        return memory.getUser(username);
+    }
+
+    @Override
+    public boolean verifyUser(String username, String password) throws DataAccessException {
+        UserData user = memory.getUser(username);
+        return user != null && BCrypt.checkpw(password, user.password());
+    }
+
+    @Override
+    public synchronized int insertGame(GameData game) throws DataAccessException {
+        if (game == null) {
+            throw new DataAccessException("Game is null");
+        }
+        GameData inserted = new GameData(nextGameId, game.whiteUsername(), game.blackUsername(), game.gameName(),
+                game.game());
+        logGame(inserted, 0);
+        memory.restoreGame(inserted, 0);
+        return nextGameId++;
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        return memory.getGame(gameID);
+    }
+
+    @Override
+    public List<GameData> listGames() throws DataAccessException {
+        return memory.listGames();
+    }
+
+    @Override
+    public List<GameSummary> listGameSummaries(int afterGameId, int limit) throws DataAccessException {
+        return memory.listGameSummaries(afterGameId, limit);
+    }
+
+    @Override
+    public synchronized void updateGame(GameData game) throws DataAccessException {
+        Integer version = game == null ? null : memory.version(game.gameID());
+        if (version == null) {
+            throw new DataAccessException("Game does not exist.");
+        }
+        logGame(new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(), game.game(),
+                version + 1), memory.loadMoves(game.gameID()).size());
+        memory.updateGame(game);
+    }
+
+    @Override
+    public synchronized boolean updateGameIfVersion(GameData game, int expectedVersion) throws DataAccessException {
+        Integer version = game == null ? null : memory.version(game.gameID());
+        if (version == null) {
+            throw new DataAccessException("Game does not exist.");
+        }
+        if (version != expectedVersion) {
+            return false;
+        }
+        logGame(game, memory.loadMoves(game.gameID()).size());
+        return memory.updateGameIfVersion(game, expectedVersion);
+    }
+
+    @Override
+    public synchronized int appendMove(int gameID, ChessMove move) throws DataAccessException {
+        if (memory.version(gameID) == null) {
+            throw new DataAccessException("Game does not exist.");
+        }
+        append(moveRecord(gameID, move));
+        return memory.appendMove(gameID, move);
+    }
+
+    @Override
+    public List<ChessMove> loadMoves(int gameID) throws DataAccessException {
+        return memory.loadMoves(gameID);
+    }
+
+    @Override
+    public int moveCount(int gameID) throws DataAccessException {
+        return memory.moveCount(gameID);
+    }
+
+    @Override
+    public synchronized void insertAuth(AuthData auth) throws DataAccessException {
+        if (auth == null || auth.authToken() == null) {
+            throw new DataAccessException("Auth or token is null");
+        }
+        append(authRecord(auth));
+        memory.insertAuth(auth);
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        return memory.getAuth(authToken);
+    }
+
+    @Override
+    public synchronized void deleteAuth(String authToken) throws DataAccessException {
+        if (authToken == null) {
+            return;
+        }
+        append(record(AUTH_DELETED, out -> out.writeUTF(authToken)));
+        memory.deleteAuth(authToken);
+    }
+
+    /**
+     * Writes the whole state as a new snapshot and starts the log over.
+     */
+    public synchronized void compact() throws DataAccessException {
+        long next = epoch + 1;
+        Path temp = settings.directory().resolve("snapshot.tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            out.write(ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putLong(next).array());
+            for (UserData user : memory.allUsers()) {
+                writeRecord(out, next, userRecord(user));
+            }
+            for (AuthData auth : memory.allAuths()) {
+                writeRecord(out, next, authRecord(auth));
+            }
+            for (Map.Entry<Integer, GameLog> game : gameLogs.entrySet()) {
+                int gameID = game.getKey();
+                int ply = game.getValue().ply();
+                List<ChessMove> moves = memory.loadMoves(gameID);
+                writeRecord(out, next, game.getValue().record());
+                if (ply > 0) {
+                    writeRecord(out, next, record(HISTORY, data -> {
+                        data.writeInt(gameID);
+                        data.writeInt(ply);
+                        for (ChessMove move : moves.subList(0, ply)) {
+                            data.writeShort(PackedMove.of(move));
+                        }
+                    }));
+                }
+                for (ChessMove move : moves.subList(ply, moves.size())) {
+                    writeRecord(out, next, moveRecord(gameID, move));
+                }
+            }
+            out.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            throw new DataAccessException("Error: unable to write snapshot: " + e.getMessage());
+        }
+        try {
+            //once this lands, the old log is ignored on startup because its epoch is behind
+            Files.move(temp, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new DataAccessException("Error: unable to replace snapshot: " + e.getMessage());
+        }
+        epoch = next;
+        resetLog();
+    }
+
+    /**
+     * Snapshots the state so the next start has no log to replay, then closes the files.
+     */
+    @Override
+    public synchronized void close() throws DataAccessException {
+        if (closed) {
+            return;
+        }
+        compact();
+        closed = true;
+        try {
+            logChannel.close();
+        } catch (IOException e) {
+            throw new DataAccessException("Error: unable to close log: " + e.getMessage());
+        }
+    }
+
+    //caller holds this
+    private void append(byte[] record) throws DataAccessException {
+        if (closed) {
+            throw new DataAccessException("Error: data files are closed");
+        }
+        if (log.remaining() < RECORD_OVERHEAD + record.length) {
+            compact();
+            if (log.remaining() < RECORD_OVERHEAD + record.length) {
+                throw new DataAccessException("Error: record is larger than the log segment");
+            }
+        }
+        int start = log.position();
+        log.position(start + RECORD_OVERHEAD);
+        log.put(record);
+        log.putInt(start, record.length);
+        log.putInt(start + 4, crc(epoch, record));
+        if (settings.syncWrites()) {
+            log.force(start, RECORD_OVERHEAD + record.length);
+        }
+    }
+
+    private void resetLog() {
+        log.putInt(0, MAGIC);
+        log.putLong(4, epoch);
+        log.position(HEADER_BYTES);
+        log.force(0, HEADER_BYTES);
+    }
+
+    private long loadSnapshot() throws IOException, DataAccessException {
+        if (!Files.exists(snapshotPath)) {
+            return 0;
+        }
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(snapshotPath));
+        if (snapshot.remaining() < HEADER_BYTES || snapshot.getInt() != MAGIC) {
+            throw new DataAccessException("Error: " + snapshotPath + " is not a snapshot");
+        }
+        long snapshotEpoch = snapshot.getLong();
+        while (snapshot.hasRemaining()) {
+            byte[] record = nextRecord(snapshot, snapshotEpoch);
+            if (record == null) {
+                //snapshots are written whole and renamed into place, so this is damage, not a torn write
+                throw new DataAccessException("Error: " + snapshotPath + " is corrupt");
+            }
+            apply(record);
+        }
+        return snapshotEpoch;
+    }
+
+    private void replayLog() throws DataAccessException {
+        log.position(HEADER_BYTES);
+        while (true) {
+            int start = log.position();
+            byte[] record = nextRecord(log, epoch);
+            if (record == null) {
+                //the first record that doesn't check out is where writing stopped
+                log.position(start);
+                return;
+            }
+            apply(record);
+        }
+    }
+
+    //the next record in buffer, or null if there isn't a whole, intact one from this epoch
+    private static byte[] nextRecord(ByteBuffer buffer, long epoch) {
+        if (buffer.remaining() < RECORD_OVERHEAD) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int crc = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            return null;
+        }
+        byte[] record = new byte[length];
+        buffer.get(record);
+        return crc(epoch, record) == crc ? record : null;
+    }
+
+    private void apply(byte[] record) throws DataAccessException {
+        try (var in = new DataInputStream(new ByteArrayInputStream(record))) {
+            switch (in.readByte()) {
+                case USER -> memory.insertUser(new UserData(in.readUTF(), in.readUTF(), readNullable(in)));
+                case AUTH -> memory.insertAuth(new AuthData(in.readUTF(), in.readUTF()));
+                case AUTH_DELETED -> memory.deleteAuth(in.readUTF());
+                case GAME -> {
+                    int gameID = in.readInt();
+                    int ply = in.readInt();
+                    int version = in.readInt();
+                    String white = readNullable(in);
+                    String black = readNullable(in);
+                    String name = readNullable(in);
+                    byte[] game = new byte[in.readInt()];
+                    in.readFully(game);
+                    memory.restoreGame(new GameData(gameID, white, black, name, GameCodec.decode(game), version), ply);
+                    gameLogs.put(gameID, new GameLog(record, ply));
+                    nextGameId = Math.max(nextGameId, gameID + 1);
+                }
+                case MOVE -> {
+                    int gameID = in.readInt();
+                    ChessMove move = PackedMove.toChessMove(in.readUnsignedShort());
+                    memory.appendMove(gameID, move);
+                }
+                case HISTORY -> {
+                    int gameID = in.readInt();
+                    List<ChessMove> history = new ArrayList<>();
+                    for (int count = in.readInt(); count > 0; count--) {
+                        history.add(PackedMove.toChessMove(in.readUnsignedShort()));
+                    }
+                    memory.restoreMoves(gameID, history);
+                }
+                default -> throw new DataAccessException("Error: unknown record type in data files");
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            throw new DataAccessException("Error: unreadable record in data files: " + e.getMessage());
+        }
+    }
+
+    private static byte[] userRecord(UserData user) throws DataAccessException {
+        return record(USER, out -> {
+            out.writeUTF(user.username());
+            out.writeUTF(user.password());
+            writeNullable(out, user.email());
+        });
+    }
+
+    private static byte[] authRecord(AuthData auth) throws DataAccessException {
+        return record(AUTH, out -> {
+            out.writeUTF(auth.authToken());
+            out.writeUTF(auth.username());
+        });
+    }
+
+    //caller holds this
+    private void logGame(GameData game, int ply) throws DataAccessException {
+        byte[] record = gameRecord(game, ply);
+        append(record);
+        gameLogs.put(game.gameID(), new GameLog(record, ply));
+    }
+
+    private static byte[] gameRecord(GameData game, int ply) throws DataAccessException {
+        return record(GAME, out -> {
+            out.writeInt(game.gameID());
+            out.writeInt(ply);
+            out.writeInt(game.version());
+            writeNullable(out, game.whiteUsername());
+            writeNullable(out, game.blackUsername());
+            writeNullable(out, game.gameName());
+            byte[] encoded = GameCodec.encode(game.game());
+            out.writeInt(encoded.length);
+            out.write(encoded);
+        });
+    }
+
+    private static byte[] moveRecord(int gameID, ChessMove move) throws DataAccessException {
+        return record(MOVE, out -> {
+            out.writeInt(gameID);
+            out.writeShort(PackedMove.of(move));
+        });
+    }
+
+    @FunctionalInterface
+    private interface RecordBody {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] record(byte type, RecordBody body) throws DataAccessException {
+        var bytes = new ByteArrayOutputStream(64);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            body.write(out);
+        } catch (IOException e) {
+            throw new DataAccessException("Error: unable to encode record: " + e.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeRecord(OutputStream out, long epoch, byte[] record) throws IOException {
+        out.write(ByteBuffer.allocate(RECORD_OVERHEAD).putInt(record.length).putInt(crc(epoch, record)).array());
+        out.write(record);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    //the epoch is part of the check, so records left over from an earlier log never pass
+    private static int crc(long epoch, byte[] record) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(8).putLong(epoch).flip());
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+}
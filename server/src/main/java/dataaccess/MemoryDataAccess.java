@@ -1,37 +1,84 @@
 package dataaccess;
 
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
 import model.AuthData;
 import model.GameData;
+import model.GameSummary;
 import model.UserData;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Keeps everything in memory, safe for concurrent HTTP and websocket threads.
+ * <p>
+ * Changes to one game hold that game's lock stripe, so a check and the write it
+ * guards happen together. Games are stored as a snapshot plus the moves logged
+ * after it, as in MySQL, and every game goes in and comes out as a copy, so no
+ * caller can change what is stored. A listing copies each game under its
+ * stripe, so every game in it is as of one moment. Changes and listings share
+ * the read side of gamesLock and only clear takes the write side.
+ */
 public class MemoryDataAccess implements DataAccess {
-    private final Map<String, UserData> users = new HashMap<>();
-    private final Map<Integer, GameData> games = new HashMap<>();
-    private final Map<String, AuthData> auths = new HashMap<>();
+    private static final int LOCK_STRIPES = 64;
+
+    private final Map<String, UserData> users = new ConcurrentHashMap<>();
+    //sorted so game listings can page by gameID
+    private final NavigableMap<Integer, GameData> games = new ConcurrentSkipListMap<>();
+    private final Map<String, AuthData> auths = new ConcurrentHashMap<>();
+    //each game's log, and how much of it its snapshot covers, are guarded by that game's stripe
+    private final Map<Integer, List<ChessMove>> moves = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> snapshotPlies = new ConcurrentHashMap<>();
+    private final AtomicInteger nextGameId = new AtomicInteger(1);
+    private final ReadWriteLock gamesLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+
+    public MemoryDataAccess() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
 
     //clear all data
     @Override
     public void clear() throws DataAccessException {
-        users.clear();
-        games.clear();
-        auths.clear();
+        gamesLock.writeLock().lock();
+        try {
+            users.clear();
+            games.clear();
+            auths.clear();
+            moves.clear();
+            snapshotPlies.clear();
+            nextGameId.set(1);
+        } finally {
+            gamesLock.writeLock().unlock();
+        }
     }
 
-    //user methods
+    //user methods, passwords are kept as given since nothing here outlives the process
     @Override
     public void insertUser(UserData user) throws DataAccessException {
         if (user == null || user.username() == null) {
             throw new DataAccessException("User or username is null");
         }
-        if (users.containsKey(user.username())) {
+        if (users.putIfAbsent(user.username(), user) != null) {
             throw new DataAccessException("User already exists");
         }
-        users.put(user.username(), user);
+    }
+
+    Collection<UserData> allUsers() {
+        return users.values();
     }
 
     @Override
@@ -47,35 +94,169 @@ public class MemoryDataAccess implements DataAccess {
         }
         return user.password().equals(password);
     }
-    //game methods
+
+    //game methods, IDs come from a sequence like MySQL's auto increment
     @Override
     public int insertGame(GameData game) throws DataAccessException {
         if (game == null) {
             throw new DataAccessException("Game is null");
         }
-        if (games.containsKey(game.gameID())) {
-            throw new DataAccessException("Game already exists");
+        gamesLock.readLock().lock();
+        try {
+            int gameID = nextGameId.getAndIncrement();
+            games.put(gameID, new GameData(gameID, game.whiteUsername(), game.blackUsername(),
+                    game.gameName(), new ChessGame(game.game())));
+            return gameID;
+        } finally {
+            gamesLock.readLock().unlock();
+        }
+    }
+
+    //puts back a game under the ID it was given, as of ply moves into its log, keeping later IDs clear of it
+    void restoreGame(GameData game, int ply) {
+        lockGame(game.gameID());
+        try {
+            games.put(game.gameID(), new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(),
+                    game.gameName(), new ChessGame(game.game()), game.version()));
+            snapshotPlies.put(game.gameID(), ply);
+            nextGameId.accumulateAndGet(game.gameID() + 1, Math::max);
+        } finally {
+            unlockGame(game.gameID());
         }
-        games.put(game.gameID(), game);
-        return game.gameID();
     }
 
     @Override
     public GameData getGame(int gameID) throws DataAccessException {
-        return games.get(gameID);
+        lockGame(gameID);
+        try {
+            GameData stored = games.get(gameID);
+            return stored == null ? null : current(stored);
+        } finally {
+            unlockGame(gameID);
+        }
+    }
+
+    //the stored version of a game, or null if it doesn't exist, without copying or replaying it
+    Integer version(int gameID) {
+        GameData stored = games.get(gameID);
+        return stored == null ? null : stored.version();
     }
 
     @Override
     public List<GameData> listGames() throws DataAccessException {
-        return new ArrayList<>(games.values());
+        List<GameData> listed = new ArrayList<>();
+        gamesLock.readLock().lock();
+        try {
+            for (int gameID : games.keySet()) {
+                ReentrantLock stripe = stripes[Math.floorMod(gameID, LOCK_STRIPES)];
+                stripe.lock();
+                try {
+                    GameData stored = games.get(gameID);
+                    if (stored != null) {
+                        listed.add(current(stored));
+                    }
+                } finally {
+                    stripe.unlock();
+                }
+            }
+        } finally {
+            gamesLock.readLock().unlock();
+        }
+        return listed;
+    }
+
+    @Override
+    public List<GameSummary> listGameSummaries(int afterGameId, int limit) throws DataAccessException {
+        List<GameSummary> page = new ArrayList<>();
+        gamesLock.readLock().lock();
+        try {
+            for (GameData game : games.tailMap(afterGameId, false).values()) {
+                if (page.size() == limit) {
+                    break;
+                }
+                page.add(new GameSummary(game.gameID(), game.whiteUsername(), game.blackUsername(),
+                        game.gameName()));
+            }
+        } finally {
+            gamesLock.readLock().unlock();
+        }
+        return page;
     }
 
     @Override
     public void updateGame(GameData game) throws DataAccessException {
-        if (game == null || !games.containsKey(game.gameID())) {
+        if (game == null) {
             throw new DataAccessException("Game does not exist.");
         }
-        games.put(game.gameID(), game);
+        lockGame(game.gameID());
+        try {
+            GameData stored = existingGame(game.gameID());
+            store(game, stored.version() + 1);
+        } finally {
+            unlockGame(game.gameID());
+        }
+    }
+
+    @Override
+    public boolean updateGameIfVersion(GameData game, int expectedVersion) throws DataAccessException {
+        if (game == null) {
+            throw new DataAccessException("Game does not exist.");
+        }
+        lockGame(game.gameID());
+        try {
+            if (existingGame(game.gameID()).version() != expectedVersion) {
+                return false;
+            }
+            store(game, game.version());
+            return true;
+        } finally {
+            unlockGame(game.gameID());
+        }
+    }
+
+    //move log methods, getGame replays what was logged after the snapshot
+    @Override
+    public int appendMove(int gameID, ChessMove move) throws DataAccessException {
+        lockGame(gameID);
+        try {
+            GameData stored = existingGame(gameID);
+            games.put(gameID, withVersion(stored, stored.version() + 1));
+            List<ChessMove> log = moves.computeIfAbsent(gameID, id -> new ArrayList<>());
+            log.add(move);
+            return log.size();
+        } finally {
+            unlockGame(gameID);
+        }
+    }
+
+    //puts back moves a restored game already includes, without counting them as changes
+    void restoreMoves(int gameID, List<ChessMove> history) {
+        lockGame(gameID);
+        try {
+            moves.computeIfAbsent(gameID, id -> new ArrayList<>()).addAll(history);
+        } finally {
+            unlockGame(gameID);
+        }
+    }
+
+    @Override
+    public List<ChessMove> loadMoves(int gameID) throws DataAccessException {
+        lockGame(gameID);
+        try {
+            return new ArrayList<>(moves.getOrDefault(gameID, List.of()));
+        } finally {
+            unlockGame(gameID);
+        }
+    }
+
+    @Override
+    public int moveCount(int gameID) throws DataAccessException {
+        lockGame(gameID);
+        try {
+            return moves.getOrDefault(gameID, List.of()).size();
+        } finally {
+            unlockGame(gameID);
+        }
     }
 
     //auth methods
@@ -89,11 +270,64 @@ public class MemoryDataAccess implements DataAccess {
 
     @Override
     public AuthData getAuth(String authToken) throws DataAccessException {
-        return auths.get(authToken);
+        return authToken == null ? null : auths.get(authToken);
     }
 
     @Override
     public void deleteAuth(String authToken) throws DataAccessException {
-        auths.remove(authToken);
+        if (authToken != null) {
+            auths.remove(authToken);
+        }
+    }
+
+    Collection<AuthData> allAuths() {
+        return auths.values();
+    }
+
+    //caller holds the game's stripe
+    private GameData existingGame(int gameID) throws DataAccessException {
+        GameData stored = games.get(gameID);
+        if (stored == null) {
+            throw new DataAccessException("Game does not exist.");
+        }
+        return stored;
+    }
+
+    //a copy of game becomes the snapshot, covering every move logged so far; caller holds the game's stripe
+    private void store(GameData game, int version) {
+        games.put(game.gameID(), new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(),
+                game.gameName(), new ChessGame(game.game()), version));
+        snapshotPlies.put(game.gameID(), moves.getOrDefault(game.gameID(), List.of()).size());
+    }
+
+    //a copy of the snapshot with the moves logged after it replayed; caller holds the game's stripe
+    private GameData current(GameData stored) throws DataAccessException {
+        ChessGame game = new ChessGame(stored.game());
+        List<ChessMove> log = moves.getOrDefault(stored.gameID(), List.of());
+        for (ChessMove move : log.subList(snapshotPlies.getOrDefault(stored.gameID(), 0), log.size())) {
+            try {
+                game.makeMove(move);
+            } catch (InvalidMoveException e) {
+                throw new DataAccessException("Error: move log does not replay: " + e.getMessage());
+            }
+        }
+        return new GameData(stored.gameID(), stored.whiteUsername(), stored.blackUsername(), stored.gameName(),
+                game, stored.version());
+    }
+
+    private static GameData withVersion(GameData game, int version) {
+        return new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(), game.game(),
+                version);
+    }
+
+    //gamesLock first, then the stripe, so a listing never waits on a stripe holder that waits on it
+    private void lockGame(int gameID) {
+        gamesLock.readLock().lock();
+        stripes[Math.floorMod(gameID, LOCK_STRIPES)].lock();
+    }
+
+    private void unlockGame(int gameID) {
+        stripes[Math.floorMod(gameID, LOCK_STRIPES)].unlock();
+        gamesLock.readLock().unlock();
     }
 }
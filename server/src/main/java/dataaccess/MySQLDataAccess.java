@@ -1,21 +1,37 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import chess.PackedMove;
+import chess.codec.GameCodec;
 import model.AuthData;
 import model.GameData;
+import model.GameSummary;
 import model.UserData;
 import com.google.gson.Gson;
 import org.mindrot.jbcrypt.BCrypt;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 public class MySQLDataAccess implements DataAccess {
+    //marks a game-over FEN row, since FEN itself has no field for it
+    private static final String FEN_GAME_OVER = " #";
+
     private final Gson gson = new Gson();
+    private final boolean storeFen;
 
     public MySQLDataAccess() throws DataAccessException {
+        storeFen = "fen".equalsIgnoreCase(DatabaseManager.gameFormat());
         createTablesIfNotExists();
     }
 
@@ -39,13 +55,83 @@ public class MySQLDataAccess implements DataAccess {
                     whiteUsername VARCHAR(255),
                     blackUsername VARCHAR(255),
                     gameName VARCHAR(255) NOT NULL,
-                    game TEXT NOT NULL
+                    game BLOB NOT NULL,
+                    snapshotPly INT NOT NULL DEFAULT 0,
+                    ply INT NOT NULL DEFAULT 0,
+                    version INT NOT NULL DEFAULT 0
+                )""");
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS moves (
+                    gameID INT NOT NULL,
+                    ply INT NOT NULL,
+                    move SMALLINT NOT NULL,
+                    playedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+                    PRIMARY KEY (gameID, ply)
                 )""");
+            migrateGamesTable(conn);
         } catch (SQLException ex) {
             throw new DataAccessException("Failed to create tables", ex);
         }
     }
 
+    //bring games tables created by older versions up to the current columns
+    private void migrateGamesTable(Connection conn) throws SQLException {
+        String sql = """
+            SELECT COLUMN_NAME, DATA_TYPE FROM information_schema.COLUMNS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'games'""";
+        Map<String, String> columns = new HashMap<>();
+        try (var ps = conn.prepareStatement(sql);
+             var rs = ps.executeQuery()) {
+            while (rs.next()) {
+                columns.put(rs.getString(1).toLowerCase(), rs.getString(2).toLowerCase());
+            }
+        }
+        try (var stmt = conn.createStatement()) {
+            //games from before the binary codec kept JSON in a TEXT column; BLOB keeps those bytes as they are
+            if (columns.getOrDefault("game", "").endsWith("text")) {
+                stmt.executeUpdate("ALTER TABLE games MODIFY game BLOB NOT NULL");
+            }
+            if (!columns.containsKey("snapshotply")) {
+                stmt.executeUpdate("ALTER TABLE games ADD COLUMN snapshotPly INT NOT NULL DEFAULT 0");
+            }
+            if (!columns.containsKey("version")) {
+                stmt.executeUpdate("ALTER TABLE games ADD COLUMN version INT NOT NULL DEFAULT 0");
+            }
+            if (!columns.containsKey("ply")) {
+                stmt.executeUpdate("ALTER TABLE games ADD COLUMN ply INT NOT NULL DEFAULT 0");
+                stmt.executeUpdate("""
+                    UPDATE games g SET ply=(SELECT COALESCE(MAX(m.ply), 0) FROM moves m WHERE m.gameID=g.gameID)""");
+            }
+        }
+    }
+
+    private byte[] encodeGame(ChessGame game) {
+        if (!storeFen) {
+            return GameCodec.encode(game);
+        }
+        String fen = game.isGameOver() ? game.toFen() + FEN_GAME_OVER : game.toFen();
+        return fen.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    //rows are GameCodec bytes, legacy JSON starting with '{', or FEN text, whatever db.gameFormat was when written
+    private ChessGame decodeGame(byte[] bytes) throws DataAccessException {
+        try {
+            if (bytes.length > 0 && bytes[0] == '{') {
+                return gson.fromJson(new String(bytes, StandardCharsets.UTF_8), ChessGame.class);
+            }
+            if (bytes.length > 0 && bytes[0] == GameCodec.VERSION) {
+                return GameCodec.decode(bytes);
+            }
+            String fen = new String(bytes, StandardCharsets.US_ASCII);
+            boolean over = fen.endsWith(FEN_GAME_OVER);
+            ChessGame game = ChessGame.fromFen(over ? fen.substring(0, fen.length() - FEN_GAME_OVER.length()) : fen);
+            game.setGameOver(over);
+            return game;
+        } catch (IllegalArgumentException e) {
+            throw new DataAccessException("Error: " + e.getMessage());
+        }
+    }
+
     //Users
     @Override
     public void insertUser(UserData user) throws DataAccessException {
@@ -113,7 +199,7 @@ public class MySQLDataAccess implements DataAccess {
             ps.setString(1, game.whiteUsername());
             ps.setString(2, game.blackUsername());
             ps.setString(3, game.gameName());
-            ps.setString(4, gson.toJson(game.game()));
+            ps.setBytes(4, encodeGame(game.game()));
             ps.executeUpdate();
 
             //set auto-generated gameID if needed
@@ -137,14 +223,7 @@ public class MySQLDataAccess implements DataAccess {
             ps.setInt(1, gameID);
             var rs = ps.executeQuery();
             if (rs.next()) {
-                ChessGame chessGame = gson.fromJson(rs.getString("game"), ChessGame.class);
-                return new GameData(
-                        rs.getInt("gameID"),
-                        rs.getString("whiteUsername"),
-                        rs.getString("blackUsername"),
-                        rs.getString("gameName"),
-                        chessGame
-                );
+                return readGame(conn, rs);
             }
             return null;
         } catch (SQLException e) {
@@ -155,19 +234,53 @@ public class MySQLDataAccess implements DataAccess {
     @Override
     public List<GameData> listGames() throws DataAccessException {
         String sql = "SELECT * FROM games";
+        //every game's moves since its snapshot, in one query rather than one per game
+        String movesSql = """
+            SELECT m.gameID, m.move FROM moves m JOIN games g ON g.gameID = m.gameID
+            WHERE m.ply > g.snapshotPly ORDER BY m.gameID, m.ply""";
         List<GameData> games = new ArrayList<>();
+        Map<Integer, ChessGame> byID = new HashMap<>();
+        try (var conn = DatabaseManager.getConnection()) {
+            try (var ps = conn.prepareStatement(sql);
+                 var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    GameData game = gameRow(rs);
+                    games.add(game);
+                    byID.put(game.gameID(), game.game());
+                }
+            }
+            try (var ps = conn.prepareStatement(movesSql);
+                 var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    replay(byID.get(rs.getInt(1)), rs.getInt(2));
+                }
+            }
+            return games;
+        } catch (SQLException e) {
+            throw new DataAccessException("Error: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<GameSummary> listGameSummaries(int afterGameId, int limit) throws DataAccessException {
+        //keyset page on the primary key, never reading the game column
+        String sql = """
+            SELECT gameID, whiteUsername, blackUsername, gameName FROM games
+            WHERE gameID > ? ORDER BY gameID LIMIT ?""";
+        List<GameSummary> games = new ArrayList<>();
         try (var conn = DatabaseManager.getConnection();
-             var ps = conn.prepareStatement(sql);
-             var rs = ps.executeQuery()) {
-            while (rs.next()) {
-                ChessGame chessGame = gson.fromJson(rs.getString("game"), ChessGame.class);
-                games.add(new GameData(
-                        rs.getInt("gameID"),
-                        rs.getString("whiteUsername"),
-                        rs.getString("blackUsername"),
-                        rs.getString("gameName"),
-                        chessGame
-                ));
+             var ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, afterGameId);
+            ps.setInt(2, limit);
+            try (var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    games.add(new GameSummary(
+                            rs.getInt("gameID"),
+                            rs.getString("whiteUsername"),
+                            rs.getString("blackUsername"),
+                            rs.getString("gameName")
+                    ));
+                }
             }
             return games;
         } catch (SQLException e) {
@@ -176,37 +289,157 @@ public class MySQLDataAccess implements DataAccess {
     }
 
     @Override public void updateGame(GameData game) throws DataAccessException {
-        String sql = "UPDATE games SET whiteUsername=?, blackUsername=?, gameName=?, game=? WHERE gameID=?";
+        //the caller's game already includes every logged move, so it becomes the snapshot at the latest ply
+        String sql = """
+            UPDATE games SET whiteUsername=?, blackUsername=?, gameName=?, game=?, snapshotPly=ply, version=version+1
+            WHERE gameID=?""";
+        int updated = executeDirect(sql, game.whiteUsername(), game.blackUsername(), game.gameName(),
+                encodeGame(game.game()), game.gameID());
+        if (updated == 0) {
+            throw new DataAccessException("Game does not exist.");
+        }
+    }
+
+    @Override
+    public boolean updateGameIfVersion(GameData game, int expectedVersion) throws DataAccessException {
+        String sql = """
+            UPDATE games SET whiteUsername=?, blackUsername=?, gameName=?, game=?, snapshotPly=ply, version=?
+            WHERE gameID=? AND version=?""";
+        int updated = executeDirect(sql, game.whiteUsername(), game.blackUsername(), game.gameName(),
+                encodeGame(game.game()), game.version(), game.gameID(), expectedVersion);
+        if (updated == 1) {
+            return true;
+        }
+        //no row matched, either because the version moved on or because there is no such game
+        if (getGameVersion(game.gameID()) == null) {
+            throw new DataAccessException("Game does not exist.");
+        }
+        return false;
+    }
+
+    private Integer getGameVersion(int gameID) throws DataAccessException {
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement("SELECT version FROM games WHERE gameID=?")) {
+            ps.setInt(1, gameID);
+            try (var rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error: " + e.getMessage());
+        }
+    }
+
+    //Moves
+    @Override
+    public int appendMove(int gameID, ChessMove move) throws DataAccessException {
+        //the games row holds the ply counter, so bumping it first locks just that row and appends queue on it
+        String plySql = "UPDATE games SET ply=ply+1, version=version+1 WHERE gameID=?";
+        String readSql = "SELECT ply FROM games WHERE gameID=?";
+        String insertSql = "INSERT INTO moves (gameID, ply, move) VALUES (?, ?, ?)";
+        try (var conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (var bump = conn.prepareStatement(plySql);
+                 var read = conn.prepareStatement(readSql);
+                 var insert = conn.prepareStatement(insertSql)) {
+                bump.setInt(1, gameID);
+                if (bump.executeUpdate() == 0) {
+                    conn.rollback();
+                    throw new DataAccessException("Game does not exist.");
+                }
+                int ply;
+                read.setInt(1, gameID);
+                try (var rs = read.executeQuery()) {
+                    rs.next();
+                    ply = rs.getInt(1);
+                }
+                insert.setInt(1, gameID);
+                insert.setInt(2, ply);
+                insert.setShort(3, (short) PackedMove.of(move));
+                insert.executeUpdate();
+                conn.commit();
+                return ply;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<ChessMove> loadMoves(int gameID) throws DataAccessException {
+        String sql = "SELECT move FROM moves WHERE gameID=? ORDER BY ply";
+        List<ChessMove> moves = new ArrayList<>();
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql)) {
-            ps.setString(1, game.whiteUsername());
-            ps.setString(2, game.blackUsername());
-            ps.setString(3, game.gameName());
-            ps.setString(4, gson.toJson(game.game()));
-            ps.setInt(5, game.gameID());
-            int updated = ps.executeUpdate();
-            if (updated == 0) {
-                throw new DataAccessException("Game does not exist.");
+            ps.setInt(1, gameID);
+            try (var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    moves.add(PackedMove.toChessMove(rs.getInt(1)));
+                }
             }
+            return moves;
         } catch (SQLException e) {
             throw new DataAccessException("Error: " + e.getMessage());
         }
     }
 
-    //Auths
     @Override
-    public void insertAuth(AuthData auth) throws DataAccessException {
-        String sql = "INSERT INTO auths (authToken, username) VALUES (?, ?)";
+    public int moveCount(int gameID) throws DataAccessException {
+        String sql = "SELECT ply FROM games WHERE gameID=?";
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql)) {
-            ps.setString(1, auth.authToken());
-            ps.setString(2, auth.username());
-            ps.executeUpdate();
+            ps.setInt(1, gameID);
+            try (var rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
         } catch (SQLException e) {
             throw new DataAccessException("Error: " + e.getMessage());
         }
     }
 
+    //the game in the current row of rs, with the moves logged after its snapshot replayed
+    private GameData readGame(Connection conn, ResultSet rs) throws SQLException, DataAccessException {
+        GameData game = gameRow(rs);
+        String sql = "SELECT move FROM moves WHERE gameID=? AND ply>? ORDER BY ply";
+        try (var ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, game.gameID());
+            ps.setInt(2, rs.getInt("snapshotPly"));
+            try (var moves = ps.executeQuery()) {
+                while (moves.next()) {
+                    replay(game.game(), moves.getInt(1));
+                }
+            }
+        }
+        return game;
+    }
+
+    private GameData gameRow(ResultSet rs) throws SQLException, DataAccessException {
+        return new GameData(
+                rs.getInt("gameID"),
+                rs.getString("whiteUsername"),
+                rs.getString("blackUsername"),
+                rs.getString("gameName"),
+                decodeGame(rs.getBytes("game")),
+                rs.getInt("version")
+        );
+    }
+
+    private void replay(ChessGame game, int packedMove) throws DataAccessException {
+        try {
+            game.makeMove(PackedMove.toChessMove(packedMove));
+        } catch (InvalidMoveException e) {
+            throw new DataAccessException("Error: move log does not replay: " + e.getMessage());
+        }
+    }
+
+    //Auths
+    @Override
+    public void insertAuth(AuthData auth) throws DataAccessException {
+        executeUpdate("INSERT INTO auths (authToken, username) VALUES (?, ?)", auth.authToken(), auth.username());
+    }
+
     @Override
     public AuthData getAuth(String authToken) throws DataAccessException {
         String sql = "SELECT * FROM auths WHERE authToken=?";
@@ -228,14 +461,7 @@ public class MySQLDataAccess implements DataAccess {
 
     @Override
     public void deleteAuth(String authToken) throws DataAccessException {
-        String sql = "DELETE FROM auths WHERE authToken=?";
-        try (var conn = DatabaseManager.getConnection();
-             var ps = conn.prepareStatement(sql)) {
-            ps.setString(1, authToken);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new DataAccessException("Error: " + e.getMessage());
-        }
+        executeUpdate("DELETE FROM auths WHERE authToken=?", authToken);
     }
 
     //Clear all data
@@ -245,22 +471,35 @@ public class MySQLDataAccess implements DataAccess {
              var stmt = conn.createStatement()) {
             stmt.executeUpdate("TRUNCATE TABLE auths");
             stmt.executeUpdate("TRUNCATE TABLE games");
+            stmt.executeUpdate("TRUNCATE TABLE moves");
             stmt.executeUpdate("TRUNCATE TABLE users");
         } catch (SQLException e) {
             throw new DataAccessException("Error: " + e.getMessage());
         }
     }
 
-    //utility for executing updates
-    private void executeUpdate(String sql, Object... params) throws DataAccessException {
+    //utility for executing updates whose count decides the outcome, which a batch might not report exactly
+    private int executeDirect(String sql, Object... params) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql)) {
             for (int i = 0; i < params.length; i++) {
                 ps.setObject(i + 1, params[i]);
             }
-            ps.executeUpdate();
+            return ps.executeUpdate();
         } catch (SQLException e) {
             throw new DataAccessException("Error: " + e.getMessage());
         }
     }
+
+    //utility for executing updates, batched with concurrent writes from other requests
+    private void executeUpdate(String sql, Object... params) throws DataAccessException {
+        try {
+            DatabaseManager.batchWriter().submit(sql, params).get();
+        } catch (ExecutionException e) {
+            throw new DataAccessException("Error: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Error: interrupted while writing");
+        }
+    }
 }
@@ -1,7 +1,8 @@
 package result;
 
-import model.GameData;
+import model.GameSummary;
 
 import java.util.List;
 
-public record ListGamesResult(List<GameData> games) {}
+//nextAfterGameId is the cursor for the following page, or null on the last page
+public record ListGamesResult(List<GameSummary> games, Integer nextAfterGameId) {}
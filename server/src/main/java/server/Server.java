@@ -15,27 +15,41 @@ import dataaccess.DataAccess;
 import service.ClearService;
 import dataaccess.DataAccessException;
 
+import java.nio.file.Path;
 import java.util.Map;
 
 import service.GameService;
+import service.GameStateCache;
 import request.CreateGameRequest;
 import result.CreateGameResult;
 import request.JoinGameRequest;
 
+import dataaccess.AuthCachingDataAccess;
+import dataaccess.FileDataAccess;
+import dataaccess.MemoryDataAccess;
 import dataaccess.MySQLDataAccess;
 
 public class Server {
+    private DataAccess dao;
+    private GameStateCache gameCache;
+    private Thread shutdownHook;
 
     public int run(int desiredPort) {
         Spark.port(desiredPort);
         Spark.staticFileLocation("web");
 
-        DataAccess dao = initializeDatabase();
+        dao = initializeDatabase();
         Gson gson = new Gson();
 
-        ClearService clearService = new ClearService(dao);
+        gameCache = new GameStateCache(dao, GameStateCache.Settings.DEFAULTS);
+        //write out games still waiting in memory if the process is told to stop
+        removeShutdownHook();
+        shutdownHook = new Thread(this::closeStorage, "storage-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        ClearService clearService = new ClearService(dao, gameCache);
         UserService userService = new UserService(dao);
-        GameService gameService = new GameService(dao);
+        GameService gameService = new GameService(dao, gameCache);
 
         //set the shared GameService for WebSocketServer
         websocket.WebSocketServer.setGameService(gameService);
@@ -59,10 +73,25 @@ public class Server {
         return Spark.port();
     }
 
+    //-Dchess.storage picks the backend: mysql (the default), file, or memory for games that needn't outlive the server
     private DataAccess initializeDatabase() {
+        String storage = System.getProperty("chess.storage", "mysql");
+        if ("memory".equalsIgnoreCase(storage)) {
+            return new MemoryDataAccess();
+        }
+        if ("file".equalsIgnoreCase(storage)) {
+            Path directory = Path.of(System.getProperty("chess.dataDir", "data"));
+            try {
+                return new FileDataAccess(FileDataAccess.Settings.defaults(directory));
+            } catch (DataAccessException e) {
+                System.err.println("Fatal error opening data files: " + e.getMessage());
+                throw new RuntimeException("Failed to open data files", e);
+            }
+        }
         try {
             DatabaseManager.createDatabase();
-            return new MySQLDataAccess();
+            //nearly every request looks its token up, so those lookups are cached
+            return new AuthCachingDataAccess(new MySQLDataAccess(), AuthCachingDataAccess.Settings.DEFAULTS);
         } catch (DataAccessException e) {
             System.err.println("Fatal error initializing database: " + e.getMessage());
             throw new RuntimeException("Failed to initialize database", e);
@@ -135,12 +164,14 @@ public class Server {
     private Object handleListGames(GameService gameService, Request req, Response res, Gson gson) {
         try {
             String authToken = req.headers("authorization");
-            ListGamesResult result = gameService.listGames(authToken);
+            Integer afterGameId = intParam(req, "afterGameId");
+            Integer limit = intParam(req, "limit");
+            ListGamesResult result = gameService.listGames(authToken, afterGameId, limit);
             res.type("application/json");
             res.status(200);
             return gson.toJson(result);
         } catch (DataAccessException e) {
-            return handleUnauthorizedOrServerError(e, res, gson);
+            return handleDataAccessException(e, res, gson);
         } catch (Exception e) {
             res.status(500);
             return gson.toJson(Map.of("message", "Error: " + e.getMessage()));
@@ -194,6 +225,8 @@ public class Server {
             status = 401;
         } else if ("Error: already taken".equals(message)) {
             status = 403;
+        } else if ("Error: game is busy, try again".equals(message)) {
+            status = 409;
         } else {
             status = 500;
         }
@@ -204,6 +237,19 @@ public class Server {
         return gson.toJson(Map.of("message", message));
     }
 
+    //optional integer query parameter; a malformed value is a bad request
+    private Integer intParam(Request req, String name) throws DataAccessException {
+        String value = req.queryParams(name);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new DataAccessException("Error: bad request");
+        }
+    }
+
     private String handleUnauthorizedOrServerError(DataAccessException e, Response res, Gson gson) {
         String message = e.getMessage();
         int status = "Error: unauthorized".equals(message) ? 401 : 500;
@@ -217,5 +263,34 @@ public class Server {
     public void stop() {
         Spark.stop();
         Spark.awaitStop();
+        closeStorage();
+        removeShutdownHook();
+    }
+
+    //once storage is closed the hook has nothing left to do, and a server run again registers its own
+    private synchronized void removeShutdownHook() {
+        if (shutdownHook == null) {
+            return;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            //the JVM is already shutting down and runs the hook regardless
+        }
+        shutdownHook = null;
+    }
+
+    //games the cache holds back must reach storage before it closes
+    private synchronized void closeStorage() {
+        if (gameCache != null) {
+            gameCache.close();
+        }
+        if (dao instanceof FileDataAccess files) {
+            try {
+                files.close();
+            } catch (DataAccessException e) {
+                System.err.println("Failed to close data files: " + e.getMessage());
+            }
+        }
     }
 }
@@ -5,12 +5,22 @@ import dataaccess.DataAccessException;
 
 public class ClearService {
     private final DataAccess dao;
+    private final GameStateCache games;
 
     public ClearService(DataAccess dao) {
+        this(dao, null);
+    }
+
+    public ClearService(DataAccess dao, GameStateCache games) {
         this.dao = dao;
+        this.games = games;
     }
 
     public void clear() throws DataAccessException {
+        //drop live games first so none of them is written back after the wipe
+        if (games != null) {
+            games.clear();
+        }
         dao.clear();
     }
 }
@@ -9,9 +9,15 @@ import java.util.*;
 
 public class GameService {
     public final DataAccess dao;
-    private static int nextGameId = 1;
+    public final GameStateCache games;
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    private static final int JOIN_ATTEMPTS = 5;
 
-    public GameService(DataAccess dao) { this.dao = dao; }
+    public GameService(DataAccess dao, GameStateCache games) {
+        this.dao = dao;
+        this.games = games;
+    }
 
     public CreateGameResult createGameResult(CreateGameRequest req, String authToken) throws DataAccessException {
         AuthData auth = dao.getAuth(authToken);
@@ -29,12 +35,31 @@ public class GameService {
     }
 
     public ListGamesResult listGames(String authToken) throws DataAccessException {
+        return listGames(authToken, null, null);
+    }
+
+    //one page of games after the afterGameId cursor, from the start if it is null; with
+    //neither a cursor nor a limit every game is listed, as clients that predate paging expect
+    public ListGamesResult listGames(String authToken, Integer afterGameId, Integer limit) throws DataAccessException {
         AuthData auth = dao.getAuth(authToken);
         if (auth == null) {
             throw new DataAccessException("Error: unauthorized");
         }
-        List<GameData> games = dao.listGames();
-        return new ListGamesResult(games);
+        if (limit != null && limit < 1) {
+            throw new DataAccessException("Error: bad request");
+        }
+        if (afterGameId == null && limit == null) {
+            return new ListGamesResult(dao.listGameSummaries(Integer.MIN_VALUE, Integer.MAX_VALUE), null);
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        //one extra row tells us whether there is another page
+        List<GameSummary> games = dao.listGameSummaries(
+                afterGameId == null ? Integer.MIN_VALUE : afterGameId, pageSize + 1);
+        if (games.size() > pageSize) {
+            games = games.subList(0, pageSize);
+            return new ListGamesResult(games, games.get(pageSize - 1).gameID());
+        }
+        return new ListGamesResult(games, null);
     }
 
     public void joinGame(JoinGameRequest req, String authToken) throws DataAccessException {
@@ -42,31 +67,39 @@ public class GameService {
         if (auth == null) {
             throw new DataAccessException("Error: unauthorized");
         }
-        GameData game = dao.getGame(req.gameID());
-        if (game == null) {
+        if (games.get(req.gameID()) == null) {
             throw new DataAccessException("Error: bad request");
         }
 
+        //written through so the game list shows the new player straight away; null means
+        //another server changed the game first, so the seat check runs again on the fresh copy
+        for (int attempt = 0; attempt < JOIN_ATTEMPTS; attempt++) {
+            if (games.updateNow(req.gameID(), game -> seat(game, req, auth)) != null) {
+                return;
+            }
+        }
+        throw new DataAccessException("Error: game is busy, try again");
+    }
+
+    private static GameData seat(GameData game, JoinGameRequest req, AuthData auth) throws DataAccessException {
         //assign player to color
         if ("WHITE".equalsIgnoreCase(req.playerColor())) {
             if (game.whiteUsername() != null) {
                 throw new DataAccessException("Error: already taken");
             }
-            game = new GameData(game.gameID(), auth.username(), game.blackUsername(), game.gameName(), game.game());
+            return new GameData(game.gameID(), auth.username(), game.blackUsername(), game.gameName(), game.game());
         } else if ("BLACK".equalsIgnoreCase(req.playerColor())) {
             if (game.blackUsername() != null) {
                 throw new DataAccessException("Error: already taken");
             }
-            game = new GameData(game.gameID(), game.whiteUsername(), auth.username(), game.gameName(), game.game());
-        } else {
-            throw new DataAccessException("Error: bad request");
+            return new GameData(game.gameID(), game.whiteUsername(), auth.username(), game.gameName(), game.game());
         }
-        dao.updateGame(game);
+        throw new DataAccessException("Error: bad request");
     }
 
     public boolean gameExists(int gameID) {
         try {
-            return dao.getGame(gameID) != null;
+            return games.get(gameID) != null;
         } catch (Exception e) {
             return false;
         }
@@ -0,0 +1,545 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import model.GameData;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Live games held in memory as the source of truth, persisted behind the scenes.
+ * <p>
+ * A game is loaded from the DataAccess on first use and from then on read and
+ * changed here. makeMove and update apply a change under the game's lock and
+ * mark it dirty; a single flusher thread later appends the new moves to the move
+ * log and, if anything besides moves changed or the log has grown by another
+ * SNAPSHOT_INTERVAL moves, writes a snapshot from the live game, so loading a game
+ * never replays more than that many logged moves. A move therefore
+ * costs no database round trip. At most maxDirty games wait to be written;
+ * beyond that, callers block until the flusher catches up. updateNow writes
+ * through, for changes other readers of the database must see at once.
+ * <p>
+ * Every change bumps the game's version. makeMove takes the version the caller
+ * checked the move against and refuses the move if the game has changed since.
+ * Snapshots are written only if the stored version is the one this cache last
+ * wrote; if another server changed the game in between, the cached copy is
+ * dropped and reloaded on next use, and the ReloadListener is told so whoever
+ * showed the cached game can show the reloaded one.
+ * <p>
+ * The database is never written while holding a game's lock. A snapshot is
+ * written from the live game, so while one is on its way changes to that game
+ * wait for it, but reads carry on.
+ * <p>
+ * Games handed out are copies, so callers can read them at leisure and any
+ * change to them stays their own; the live game only changes through makeMove,
+ * update and updateNow.
+ * <p>
+ * Games with nothing left to write are evicted once idle for idleTtl, finished
+ * games after finishedTtl, and least recently used first while there are more
+ * than maxGames. close() writes everything still dirty.
+ */
+public class GameStateCache implements AutoCloseable {
+
+    /**
+     * @param maxGames          games kept in memory before the least recently used are dropped
+     * @param maxDirty          games waiting to be written before changes block
+     * @param idleTtlMillis     games untouched this long are dropped
+     * @param finishedTtlMillis finished games untouched this long are dropped
+     */
+    public record Settings(int maxGames, int maxDirty, long idleTtlMillis, long finishedTtlMillis) {
+        public static final Settings DEFAULTS = new Settings(1_000, 10_000, 30 * 60_000, 60_000);
+    }
+
+    /**
+     * A change to a game, run while holding that game's lock.
+     */
+    @FunctionalInterface
+    public interface GameChange {
+        GameData apply(GameData game) throws DataAccessException;
+    }
+
+    /**
+     * Told when a cached game was dropped because another server changed it.
+     * Called on the writing thread, so it should hand off anything slow.
+     */
+    @FunctionalInterface
+    public interface ReloadListener {
+        void reloaded(int gameID);
+    }
+
+    private static final long RETRY_DELAY_MILLIS = 1_000;
+    //a snapshot is written once per this many plies in the move log
+    static final int SNAPSHOT_INTERVAL = 32;
+
+    private final DataAccess dao;
+    private final Settings settings;
+    private final ConcurrentHashMap<Integer, Entry> games = new ConcurrentHashMap<>();
+    private final BlockingQueue<Entry> dirty;
+    private final Thread flusher;
+    private final ScheduledExecutorService sweeper;
+    private volatile ReloadListener reloadListener = gameID -> { };
+    private volatile boolean closed = false;
+
+    public GameStateCache(DataAccess dao, Settings settings) {
+        this.dao = dao;
+        this.settings = settings;
+        this.dirty = new LinkedBlockingQueue<>(settings.maxDirty());
+        this.flusher = new Thread(this::flushLoop, "game-state-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-state-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1_000, Math.min(settings.idleTtlMillis(), settings.finishedTtlMillis()) / 2);
+        sweeper.scheduleWithFixedDelay(() -> evict(System.currentTimeMillis()), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void setReloadListener(ReloadListener reloadListener) {
+        this.reloadListener = reloadListener;
+    }
+
+    /**
+     * @return a copy of the live game, loading it if it isn't cached, or null if it doesn't exist
+     */
+    public GameData get(int gameID) throws DataAccessException {
+        Entry entry = entry(gameID);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return copy(entry.data);
+        }
+    }
+
+    /**
+     * @return how many moves the game has had, or 0 if it doesn't exist
+     */
+    public int ply(int gameID) throws DataAccessException {
+        Entry entry = entry(gameID);
+        if (entry == null) {
+            return 0;
+        }
+        synchronized (entry) {
+            return entry.ply;
+        }
+    }
+
+    /**
+     * Makes a move on the live game and queues it for the move log.
+     *
+     * @param expectedVersion the version of the game the move was checked against
+     * @return a copy of the game after the move, or null if the game is no longer at expectedVersion
+     * @throws DataAccessException if the game doesn't exist or can't be loaded
+     */
+    public GameData makeMove(int gameID, ChessMove move, int expectedVersion)
+            throws DataAccessException, InvalidMoveException {
+        while (true) {
+            Entry entry = existingEntry(gameID);
+            GameData moved;
+            boolean enqueue;
+            synchronized (entry) {
+                awaitWrite(entry);
+                if (entry.evicted) {
+                    continue;
+                }
+                if (entry.data.version() != expectedVersion) {
+                    return null;
+                }
+                entry.data.game().makeMove(move);
+                entry.pendingMoves.add(move);
+                entry.ply++;
+                entry.data = withVersion(entry.data, entry.data.version() + 1);
+                moved = copy(entry.data);
+                enqueue = markDirty(entry);
+            }
+            if (enqueue) {
+                enqueue(entry);
+            }
+            return moved;
+        }
+    }
+
+    /**
+     * Changes the live game and queues a snapshot of it.
+     *
+     * @return a copy of the changed game
+     */
+    public GameData update(int gameID, GameChange change) throws DataAccessException {
+        while (true) {
+            Entry entry = existingEntry(gameID);
+            GameData changed;
+            boolean enqueue;
+            synchronized (entry) {
+                awaitWrite(entry);
+                if (entry.evicted) {
+                    continue;
+                }
+                entry.data = withVersion(change.apply(entry.data), entry.data.version() + 1);
+                changed = copy(entry.data);
+                entry.snapshotDirty = true;
+                enqueue = markDirty(entry);
+            }
+            if (enqueue) {
+                enqueue(entry);
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Changes the live game and writes it, after any queued writes for it, before returning.
+     *
+     * @return a copy of the changed game, or null if another server changed the game first, in
+     * which case the change was not made and may be retried against the reloaded game
+     */
+    public GameData updateNow(int gameID, GameChange change) throws DataAccessException {
+        while (true) {
+            Entry entry = existingEntry(gameID);
+            entry.writeLock.lock();
+            try {
+                //only writers evict, and this thread holds writeLock, so the entry stays
+                synchronized (entry) {
+                    if (entry.evicted) {
+                        continue;
+                    }
+                }
+                return writeSnapshot(entry, game -> withVersion(change.apply(game), game.version() + 1));
+            } finally {
+                entry.writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Drops every cached game along with anything still waiting to be written.
+     */
+    public void clear() {
+        for (Entry entry : games.values()) {
+            entry.writeLock.lock();
+            try {
+                synchronized (entry) {
+                    discard(entry);
+                }
+            } finally {
+                entry.writeLock.unlock();
+            }
+        }
+    }
+
+    public int size() {
+        return games.size();
+    }
+
+    /**
+     * Stops background work and writes every dirty game. Changes made after this
+     * are written as they happen.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        sweeper.shutdownNow();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Entry entry : games.values()) {
+            flush(entry);
+        }
+    }
+
+    private Entry entry(int gameID) throws DataAccessException {
+        Entry entry = games.get(gameID);
+        if (entry == null) {
+            GameData loaded = dao.getGame(gameID);
+            if (loaded == null) {
+                return null;
+            }
+            Entry existing = games.putIfAbsent(gameID, new Entry(loaded, dao.moveCount(gameID)));
+            entry = existing != null ? existing : games.get(gameID);
+            if (existing == null && games.size() > settings.maxGames()) {
+                evict(System.currentTimeMillis());
+            }
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return entry;
+    }
+
+    private Entry existingEntry(int gameID) throws DataAccessException {
+        Entry entry = entry(gameID);
+        if (entry == null) {
+            throw new DataAccessException("Game does not exist.");
+        }
+        return entry;
+    }
+
+    /**
+     * @return whether the caller must queue the entry once it lets go of its lock
+     */
+    private boolean markDirty(Entry entry) {
+        if (entry.queued) {
+            return false;
+        }
+        entry.queued = true;
+        return true;
+    }
+
+    //blocks while the queue is full, which is what holds writers back when the database falls behind
+    private void enqueue(Entry entry) {
+        if (!closed) {
+            try {
+                dirty.put(entry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (closed || Thread.currentThread().isInterrupted()) {
+            flush(entry);
+        }
+    }
+
+    private void flushLoop() {
+        while (!closed || !dirty.isEmpty()) {
+            try {
+                Entry entry = dirty.poll(100, TimeUnit.MILLISECONDS);
+                if (entry != null && !flush(entry)) {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                //close() waits for the queue to drain rather than interrupting
+            }
+        }
+    }
+
+    /**
+     * Writes an entry's queued moves, then its snapshot if it has one.
+     *
+     * @return false if the write failed and the entry was queued again
+     */
+    private boolean flush(Entry entry) {
+        entry.writeLock.lock();
+        try {
+            List<ChessMove> moves;
+            synchronized (entry) {
+                entry.queued = false;
+                moves = takePending(entry);
+            }
+            //moves are logged without holding the game, so play carries on meanwhile
+            appendMoves(entry, moves);
+            boolean snapshot;
+            synchronized (entry) {
+                snapshot = entry.snapshotDirty;
+            }
+            if (snapshot) {
+                writeSnapshot(entry, game -> game);
+            }
+            return true;
+        } catch (DataAccessException e) {
+            System.err.println("Failed to persist game " + entry.gameID + ": " + e.getMessage());
+            synchronized (entry) {
+                if (!closed && !entry.queued) {
+                    entry.queued = dirty.offer(entry);
+                }
+            }
+            return false;
+        } finally {
+            entry.writeLock.unlock();
+        }
+    }
+
+    //caller holds the entry's lock; changes to the game wait while its snapshot is being written
+    private static void awaitWrite(Entry entry) throws DataAccessException {
+        while (entry.writing) {
+            try {
+                entry.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataAccessException("Error: interrupted while waiting for the game");
+            }
+        }
+    }
+
+    //caller holds the entry's lock
+    private static List<ChessMove> takePending(Entry entry) {
+        List<ChessMove> moves = new ArrayList<>(entry.pendingMoves);
+        entry.pendingMoves.clear();
+        return moves;
+    }
+
+    //on failure, the moves not yet logged go back in front of any made since
+    private void appendMoves(Entry entry, List<ChessMove> moves) throws DataAccessException {
+        for (int i = 0; i < moves.size(); i++) {
+            try {
+                int ply = dao.appendMove(entry.gameID, moves.get(i));
+                entry.persistedVersion++;
+                if (ply % SNAPSHOT_INTERVAL == 0) {
+                    synchronized (entry) {
+                        entry.snapshotDirty = true;
+                    }
+                }
+            } catch (DataAccessException e) {
+                synchronized (entry) {
+                    entry.pendingMoves.addAll(0, moves.subList(i, moves.size()));
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Makes change to the live game and writes the result as a snapshot, after
+     * logging the moves it covers, if the stored game is still the one this cache
+     * last wrote. Otherwise the entry is dropped and the ReloadListener told.
+     * Caller holds writeLock.
+     *
+     * @return a copy of the game written, or null if the entry was dropped
+     */
+    private GameData writeSnapshot(Entry entry, GameChange change) throws DataAccessException {
+        GameData game;
+        List<ChessMove> moves;
+        synchronized (entry) {
+            game = change.apply(entry.data);
+            //the snapshot covers every move made so far, so those are logged first
+            moves = takePending(entry);
+            entry.writing = true;
+        }
+        boolean answered = false;
+        boolean written = false;
+        GameData result = null;
+        try {
+            appendMoves(entry, moves);
+            written = dao.updateGameIfVersion(game, entry.persistedVersion);
+            answered = true;
+        } finally {
+            //in one go with letting changes through, so none lands between the write and its outcome
+            synchronized (entry) {
+                entry.writing = false;
+                entry.notifyAll();
+                if (written) {
+                    entry.persistedVersion = game.version();
+                    entry.data = game;
+                    entry.snapshotDirty = false;
+                    result = copy(game);
+                } else if (answered) {
+                    discard(entry);
+                }
+            }
+        }
+        if (result != null) {
+            return result;
+        }
+        System.err.println("Game " + entry.gameID + " was changed elsewhere, reloading it");
+        reloadListener.reloaded(entry.gameID);
+        return null;
+    }
+
+    //caller holds writeLock and the entry's lock
+    private void discard(Entry entry) {
+        entry.pendingMoves.clear();
+        entry.snapshotDirty = false;
+        entry.evicted = true;
+        games.remove(entry.gameID, entry);
+    }
+
+    private static GameData copy(GameData game) {
+        return new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(),
+                new ChessGame(game.game()), game.version());
+    }
+
+    private static GameData withVersion(GameData game, int version) {
+        return new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(), game.game(),
+                version);
+    }
+
+    /**
+     * Drops clean games that have been idle too long, then the least recently used
+     * clean games while there are more than maxGames.
+     */
+    void evict(long now) {
+        for (Entry entry : games.values()) {
+            long idle = now - entry.lastAccess;
+            if (idle > settings.idleTtlMillis() || (entry.finished() && idle > settings.finishedTtlMillis())) {
+                tryEvict(entry);
+            }
+        }
+        int excess = games.size() - settings.maxGames();
+        if (excess > 0) {
+            List<Entry> oldestFirst = new ArrayList<>(games.values());
+            oldestFirst.sort(Comparator.comparingLong(entry -> entry.lastAccess));
+            for (Entry entry : oldestFirst) {
+                if (excess == 0) {
+                    break;
+                }
+                if (tryEvict(entry)) {
+                    excess--;
+                }
+            }
+        }
+    }
+
+    private boolean tryEvict(Entry entry) {
+        if (!entry.writeLock.tryLock()) {
+            return false;
+        }
+        try {
+            synchronized (entry) {
+                if (entry.queued || entry.snapshotDirty || !entry.pendingMoves.isEmpty()) {
+                    return false;
+                }
+                entry.evicted = true;
+                return games.remove(entry.gameID, entry);
+            }
+        } finally {
+            entry.writeLock.unlock();
+        }
+    }
+
+    /**
+     * One cached game. Its monitor guards the game and what is waiting to be
+     * written; writeLock is held for the whole of a write so writes for a game
+     * reach the database in order. Take writeLock before the monitor, never after.
+     */
+    private static final class Entry {
+        private final int gameID;
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private final List<ChessMove> pendingMoves = new ArrayList<>();
+        //the version the database holds as far as this cache knows, guarded by writeLock
+        private int persistedVersion;
+        private GameData data;
+        private int ply;
+        private boolean snapshotDirty = false;
+        private boolean queued = false;
+        private boolean evicted = false;
+        //a snapshot of the live game is being written, so changes to it wait
+        private boolean writing = false;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        Entry(GameData data, int ply) {
+            this.gameID = data.gameID();
+            this.persistedVersion = data.version();
+            this.data = data;
+            this.ply = ply;
+        }
+
+        synchronized boolean finished() {
+            return data.game().isGameOver();
+        }
+    }
+}
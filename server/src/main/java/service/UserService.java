@@ -3,7 +3,6 @@ package service;
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
 import model.*;
-import org.mindrot.jbcrypt.BCrypt;
 import request.*;
 import result.*;
 import java.util.UUID;
@@ -67,9 +66,9 @@ public class UserService {
             System.out.println("User found: " + user.username() + ", hashed password in DB: " + user.password());
         }
 
-        // If you are storing hashed passwords, use BCrypt to check:
-        boolean passwordMatch = BCrypt.checkpw(req.password(), user.password());
-        System.out.println("BCrypt password match: " + passwordMatch);
+        //each store checks the password the way it stored it
+        boolean passwordMatch = dao.verifyUser(req.username(), req.password());
+        System.out.println("Password match: " + passwordMatch);
 
         if (!passwordMatch) {
             System.out.println("Password does not match for user: " + req.username());
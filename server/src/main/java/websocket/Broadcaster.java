@@ -0,0 +1,173 @@
+package websocket;
+
+import com.google.gson.Gson;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import websocket.codec.MessageCodec;
+import websocket.messages.ServerMessage;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends server messages to sessions without waiting on them.
+ * <p>
+ * A broadcast serializes its message at most once per wire format, JSON text
+ * or MessageCodec binary for sessions that asked for it, and every session
+ * gets the same payload. Sends are asynchronous, so a slow spectator holds up
+ * neither the game's actor nor the other sessions, and a send that fails is
+ * logged against its own session only. A session that lets more than
+ * maxPending sends pile up unwritten is closed instead of being buffered for
+ * without bound.
+ * <p>
+ * Every frame to a session goes through here, direct replies included, since
+ * Jetty refuses a blocking send while an asynchronous one is still pending.
+ * Only sessions between register and forget are sent to, so a broadcast that
+ * runs after a session closed can't bring it back.
+ */
+class Broadcaster {
+    static final int DEFAULT_MAX_PENDING = 64;
+
+    private static final Gson GSON = new Gson();
+
+    //one asynchronous write of a payload
+    @FunctionalInterface
+    private interface Write {
+        void to(RemoteEndpoint remote, WriteCallback callback);
+    }
+
+    /**
+     * One message on its way to any number of sessions.
+     */
+    final class Outgoing {
+        private final ServerMessage message;
+        private String text;
+        private ByteBuffer binary;
+
+        private Outgoing(ServerMessage message) {
+            this.message = message;
+        }
+
+        void sendTo(Session session) {
+            if (binarySessions.contains(session)) {
+                if (binary == null) {
+                    binary = ByteBuffer.wrap(MessageCodec.encodeMessage(message));
+                }
+                //each session reads its own view, so one buffer serves the whole broadcast
+                ByteBuffer payload = binary;
+                write(session, (remote, callback) -> remote.sendBytes(payload.duplicate(), callback));
+            } else {
+                if (text == null) {
+                    text = GSON.toJson(message);
+                }
+                String payload = text;
+                write(session, (remote, callback) -> remote.sendString(payload, callback));
+            }
+        }
+    }
+
+    private final int maxPending;
+    private final ConcurrentHashMap<Session, AtomicInteger> pending = new ConcurrentHashMap<>();
+    private final Set<Session> binarySessions = ConcurrentHashMap.newKeySet();
+
+    Broadcaster(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Starts sending to a session once it has connected.
+     */
+    void register(Session session) {
+        pending.putIfAbsent(session, new AtomicInteger());
+    }
+
+    Outgoing outgoing(ServerMessage message) {
+        return new Outgoing(message);
+    }
+
+    /**
+     * Sends message to one session.
+     */
+    void send(Session session, ServerMessage message) {
+        outgoing(message).sendTo(session);
+    }
+
+    /**
+     * Sends message to every open session in sessions except skip, which may be null.
+     */
+    void sendAll(Iterable<Session> sessions, Session skip, ServerMessage message) {
+        if (sessions == null) {
+            return;
+        }
+        Outgoing outgoing = outgoing(message);
+        for (Session session : sessions) {
+            if (session != skip) {
+                outgoing.sendTo(session);
+            }
+        }
+    }
+
+    /**
+     * Picks whether a session gets MessageCodec frames or JSON text from now on.
+     */
+    void useBinary(Session session, boolean binary) {
+        if (binary) {
+            binarySessions.add(session);
+        } else {
+            binarySessions.remove(session);
+        }
+    }
+
+    boolean usesBinary(Session session) {
+        return binarySessions.contains(session);
+    }
+
+    private void write(Session session, Write write) {
+        AtomicInteger count = pending.get(session);
+        if (count == null || !session.isOpen()) {
+            return;
+        }
+        if (count.incrementAndGet() > maxPending) {
+            count.decrementAndGet();
+            System.err.println("Closing websocket " + session.getRemoteAddress() + ", too many unsent messages");
+            session.close(StatusCode.POLICY_VIOLATION, "Too far behind");
+            return;
+        }
+        try {
+            write.to(session.getRemote(), new WriteCallback() {
+                @Override
+                public void writeFailed(Throwable failure) {
+                    count.decrementAndGet();
+                    System.err.println("Failed to send to websocket " + session.getRemoteAddress() + ": "
+                            + failure.getMessage());
+                }
+
+                @Override
+                public void writeSuccess() {
+                    count.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            //a session closing under us throws here rather than failing the callback
+            count.decrementAndGet();
+            System.err.println("Failed to send to websocket " + session.getRemoteAddress() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops what is kept for a session once it has closed.
+     */
+    void forget(Session session) {
+        pending.remove(session);
+        binarySessions.remove(session);
+    }
+
+    int pendingSends(Session session) {
+        AtomicInteger count = pending.get(session);
+        return count == null ? 0 : count.get();
+    }
+}
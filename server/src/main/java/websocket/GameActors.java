@@ -0,0 +1,109 @@
+package websocket;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the tasks for each game one at a time, in the order they were submitted,
+ * while tasks for different games run in parallel.
+ * <p>
+ * Each game with work waiting has a mailbox drained by a single virtual thread.
+ * Once the mailbox is empty it is removed and the thread ends, so idle games
+ * cost nothing and no lock is shared between games. Whatever a task throws,
+ * Errors included, goes to the FailureHandler and the next task runs, so one
+ * bad command never leaves the rest of its game waiting.
+ */
+class GameActors {
+
+    /**
+     * Work for one game, run on that game's thread.
+     */
+    @FunctionalInterface
+    interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * Told about a task that threw, on the game's thread.
+     */
+    @FunctionalInterface
+    interface FailureHandler {
+        void failed(int gameID, Throwable failure);
+    }
+
+    //a mailbox's queue is only touched inside compute for its game, which is what keeps one drainer per game
+    private static final class Mailbox {
+        private final Queue<Task> tasks = new ArrayDeque<>();
+    }
+
+    private final ConcurrentHashMap<Integer, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final Executor executor;
+    private final FailureHandler onFailure;
+
+    GameActors(FailureHandler onFailure) {
+        this(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("game-actor-", 0).factory()), onFailure);
+    }
+
+    GameActors(Executor executor, FailureHandler onFailure) {
+        this.executor = executor;
+        this.onFailure = onFailure;
+    }
+
+    /**
+     * Queues a task behind the ones already waiting for the game.
+     */
+    void submit(int gameID, Task task) {
+        Mailbox[] started = new Mailbox[1];
+        mailboxes.compute(gameID, (id, mailbox) -> {
+            if (mailbox == null) {
+                mailbox = new Mailbox();
+                started[0] = mailbox;
+            }
+            mailbox.tasks.add(task);
+            return mailbox;
+        });
+        if (started[0] != null) {
+            Mailbox mailbox = started[0];
+            executor.execute(() -> drain(gameID, mailbox));
+        }
+    }
+
+    /**
+     * @return the number of games with tasks waiting or running
+     */
+    int activeGames() {
+        return mailboxes.size();
+    }
+
+    private void drain(int gameID, Mailbox mailbox) {
+        Task task;
+        while ((task = next(gameID, mailbox)) != null) {
+            try {
+                task.run();
+            } catch (Throwable failure) {
+                fail(gameID, failure);
+            }
+        }
+    }
+
+    private void fail(int gameID, Throwable failure) {
+        try {
+            onFailure.failed(gameID, failure);
+        } catch (Throwable ignored) {
+            //a handler that fails as well must not stop the drainer either
+        }
+    }
+
+    //the mailbox stays in the map while its last task runs, so submit never starts a second drainer
+    private Task next(int gameID, Mailbox mailbox) {
+        Task[] next = new Task[1];
+        mailboxes.compute(gameID, (id, current) -> {
+            next[0] = mailbox.tasks.poll();
+            return next[0] == null ? null : mailbox;
+        });
+        return next[0];
+    }
+}
@@ -5,15 +5,18 @@ import com.google.gson.Gson;
 import model.AuthData;
 import model.GameData;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
 import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import service.GameService;
+import websocket.codec.MessageCodec;
 import websocket.commands.UserGameCommand;
 import websocket.messages.ServerMessage;
 
-import java.io.IOException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -21,41 +24,98 @@ import java.util.concurrent.CopyOnWriteArraySet;
 @WebSocket
 public class WebSocketServer {
 
+    private static final Logger LOG = LoggerFactory.getLogger(WebSocketServer.class);
     private static final Gson GSON = new Gson();
+    private static final int MOVE_ATTEMPTS = 5;
 
     private static GameService gameService;
 
     public static void setGameService(GameService service) {
         gameService = service;
+        //on the game's actor so the reloaded board goes out in order with the game's other messages
+        service.games.setReloadListener(gameID -> ACTORS.submit(gameID, () -> broadcastReload(gameID)));
     }
     // Map gameID to sessions
     private static final ConcurrentHashMap<Integer, Set<Session>> GAME_SESSIONS = new ConcurrentHashMap<>();
     // Map session to gameID for cleanup
     private static final ConcurrentHashMap<Session, Integer> SESSION_GAME_MAP = new ConcurrentHashMap<>();
+    // Map session to the board format it asked for on CONNECT
+    private static final ConcurrentHashMap<Session, UserGameCommand.BoardFormat> SESSION_BOARD_FORMAT =
+            new ConcurrentHashMap<>();
+    //commands for one game run one at a time and in arrival order, games run in parallel
+    private static final GameActors ACTORS = new GameActors(WebSocketServer::actorFailed);
+    private static final Broadcaster BROADCASTER = new Broadcaster(Broadcaster.DEFAULT_MAX_PENDING);
 
     @OnWebSocketConnect
     public void onConnect(Session session) {
-        // Optionally log connection
+        BROADCASTER.register(session);
     }
 
     @OnWebSocketClose
     public void onClose(Session session, int statusCode, String reason) {
         Integer gameID = SESSION_GAME_MAP.remove(session);
+        SESSION_BOARD_FORMAT.remove(session);
+        BROADCASTER.forget(session);
         if (gameID != null) {
-            Set<Session> sessions = GAME_SESSIONS.get(gameID);
-            if (sessions != null) {
-                sessions.remove(session);
-                if (sessions.isEmpty()) {
-                    GAME_SESSIONS.remove(gameID);
-                }
+            //on the game's actor so a CONNECT running meanwhile can't add to a set being dropped
+            ACTORS.submit(gameID, () -> untrack(session, gameID));
+        }
+    }
+
+    //caller is on the game's actor
+    private static void untrack(Session session, int gameID) {
+        Set<Session> sessions = GAME_SESSIONS.get(gameID);
+        if (sessions != null) {
+            sessions.remove(session);
+            if (sessions.isEmpty()) {
+                GAME_SESSIONS.remove(gameID);
             }
         }
     }
 
     @OnWebSocketMessage
-    public void onMessage(Session session, String message) throws IOException {
+    public void onMessage(Session session, String message) {
         UserGameCommand command = GSON.fromJson(message, UserGameCommand.class);
+        submit(session, command, false);
+    }
+
+    //MessageCodec frames; a session that connects with one gets binary frames back
+    @OnWebSocketMessage
+    public void onMessage(Session session, byte[] payload, int offset, int length) {
+        UserGameCommand command;
+        try {
+            command = MessageCodec.decodeCommand(payload, offset, length);
+        } catch (IllegalArgumentException e) {
+            session.close(StatusCode.BAD_DATA, e.getMessage());
+            return;
+        }
+        submit(session, command, true);
+    }
 
+    private void submit(Session session, UserGameCommand command, boolean binary) {
+        //the frame type of CONNECT picks the session's wire format, before anything is sent back
+        if (command.getCommandType() == UserGameCommand.CommandType.CONNECT) {
+            BROADCASTER.useBinary(session, binary);
+        }
+        ACTORS.submit(command.getGameID(), () -> {
+            try {
+                handleCommand(session, command);
+            } catch (Exception e) {
+                LOG.error("Websocket command for game {} failed", command.getGameID(), e);
+                sendError(session, "Server error while processing command.");
+            }
+        });
+    }
+
+    //what got past a task's own handling may have left the game half done, so everyone in it hears
+    private static void actorFailed(int gameID, Throwable failure) {
+        LOG.error("Websocket task for game {} failed", gameID, failure);
+        BROADCASTER.sendAll(GAME_SESSIONS.get(gameID), null, new ServerMessage(
+                ServerMessage.ServerMessageType.ERROR,
+                "Server error in this game, reconnect to reload it."));
+    }
+
+    private void handleCommand(Session session, UserGameCommand command) {
         // Extract common fields
         int gameID = command.getGameID();
         String authToken = command.getAuthToken();
@@ -67,7 +127,7 @@ public class WebSocketServer {
                         ServerMessage.ServerMessageType.ERROR,
                         "Invalid or missing authentication token."
                 );
-                session.getRemote().sendString(GSON.toJson(errorMsg));
+                reply(session, errorMsg);
                 return;
             }
         } catch (Exception e) {
@@ -75,7 +135,7 @@ public class WebSocketServer {
                     ServerMessage.ServerMessageType.ERROR,
                     "Data access error while checking authentication."
             );
-            session.getRemote().sendString(GSON.toJson(errorMsg));
+            reply(session, errorMsg);
             return;
         }
 
@@ -85,7 +145,7 @@ public class WebSocketServer {
                     ServerMessage.ServerMessageType.ERROR,
                     "Invalid game ID: " + gameID
             );
-            session.getRemote().sendString(GSON.toJson(errorMsg));
+            reply(session, errorMsg);
             return;
         }
 
@@ -103,43 +163,55 @@ public class WebSocketServer {
             case LEAVE:
                 handleLeave(session, command, gameID, authToken);
                 break;
+            case RESYNC:
+                handleResync(session, gameID);
+                break;
             default:
                 sendError(session, "Unknown command type.");
                 break;
         }
     }
 
-    private void handleConnect(Session session, UserGameCommand command, int gameID, String authToken)
-            throws IOException {
+    private void handleConnect(Session session, UserGameCommand command, int gameID, String authToken) {
         //track session
         GAME_SESSIONS.putIfAbsent(gameID, new CopyOnWriteArraySet<>());
         Set<Session> sessions = GAME_SESSIONS.get(gameID);
         sessions.add(session);
         SESSION_GAME_MAP.put(session, gameID);
+        //binary frames carry boards as GameCodec snapshots, which they build from FEN
+        var boardFormat = command.getBoardFormat();
+        if (BROADCASTER.usesBinary(session) && boardFormat == UserGameCommand.BoardFormat.JSON) {
+            boardFormat = UserGameCommand.BoardFormat.FEN;
+        }
+        SESSION_BOARD_FORMAT.put(session, boardFormat);
+        //the socket may have closed while this CONNECT waited its turn, before there was anything to clean up
+        if (!session.isOpen()) {
+            SESSION_GAME_MAP.remove(session);
+            SESSION_BOARD_FORMAT.remove(session);
+            untrack(session, gameID);
+            return;
+        }
 
         //get game and player color (derive from command or auth if needed)
         GameData gameData;
         try {
-            gameData = gameService.dao.getGame(gameID);
+            gameData = gameService.games.get(gameID);
         } catch (Exception e) {
             ServerMessage errorMsg = new ServerMessage(
                     ServerMessage.ServerMessageType.ERROR,
                     "Data access error while fetching game."
             );
-            session.getRemote().sendString(GSON.toJson(errorMsg));
+            reply(session, errorMsg);
             return;
         }
 
-        ChessBoard gameBoard = gameData.game().getBoard();
-
         String playerColor = null;
         try {
             AuthData auth = gameService.dao.getAuth(authToken);
-            GameData gameInfo = gameService.dao.getGame(gameID);
-            if (auth != null && gameInfo != null) {
-                if (auth.username().equals(gameInfo.whiteUsername())) {
+            if (auth != null && gameData != null) {
+                if (auth.username().equals(gameData.whiteUsername())) {
                     playerColor = "WHITE";
-                } else if (auth.username().equals(gameInfo.blackUsername())) {
+                } else if (auth.username().equals(gameData.blackUsername())) {
                     playerColor = "BLACK";
                 } else {
                     playerColor = "OBSERVER";
@@ -149,66 +221,69 @@ public class WebSocketServer {
             playerColor = null;
         }
         //send LOAD_GAME to connecting session
-        ServerMessage loadGameMsg = new ServerMessage(
-                ServerMessage.ServerMessageType.LOAD_GAME,
-                gameBoard,
-                playerColor
-        );
-        session.getRemote().sendString(GSON.toJson(loadGameMsg));
+        ServerMessage loadGameMsg = loadGameMessage(gameData.game(), playerColor, boardFormat, fetchPly(gameID));
+        reply(session, loadGameMsg);
         //send NOTIFICATION to others
         ServerMessage notificationMsg = new ServerMessage(
                 ServerMessage.ServerMessageType.NOTIFICATION,
                 playerColor + " joined the game!"
         );
-        for (Session s : sessions) {
-            if (s != session && s.isOpen()) {
-                s.getRemote().sendString(GSON.toJson(notificationMsg));
-            }
-        }
+        BROADCASTER.sendAll(sessions, session, notificationMsg);
     }
 
-    private void handleMakeMove(Session session, UserGameCommand command, int gameID, String authToken) throws IOException {
-        GameData gameData = fetchGameData(session, gameID);
-        if (gameData == null) {
-            return;
-        }
-
-        ChessGame chessGame = gameData.game();
-        ChessBoard board = chessGame.getBoard();
+    private void handleMakeMove(Session session, UserGameCommand command, int gameID, String authToken) {
         ChessMove move = command.getMove();
-
-        if (move == null) {
-            sendError(session, "Move not provided.");
-            return;
-        }
         String username = fetchUsername(authToken);
-        ChessGame.TeamColor playerColor = getPlayerColor(username, gameData);
-        if (!isValidMoveAttempt(chessGame, move, playerColor)) {
-            sendError(session, "You cannot move for your opponent.");
-            return;
-        }
-        if (!applyMove(session, chessGame, move)){
-            return;
-        }
-        if (!updateGameState(session, gameService, gameData, chessGame)){
-            return;
+        //the move is checked against one version of the game and made only if the game is still at it
+        for (int attempt = 0; attempt < MOVE_ATTEMPTS; attempt++) {
+            GameData gameData = fetchGameData(session, gameID);
+            if (gameData == null) {
+                return;
+            }
+            if (move == null) {
+                sendError(session, "Move not provided.");
+                return;
+            }
+            //positions are the client's, and the board refuses any off it
+            if (!onBoard(move.getStartPosition()) || !onBoard(move.getEndPosition())) {
+                sendError(session, "Invalid move.");
+                return;
+            }
+            ChessGame.TeamColor playerColor = getPlayerColor(username, gameData);
+            if (!isValidMoveAttempt(gameData.game(), move, playerColor)) {
+                sendError(session, "You cannot move for your opponent.");
+                return;
+            }
+            GameData moved;
+            try {
+                moved = gameService.games.makeMove(gameID, move, gameData.version());
+            } catch (InvalidMoveException e) {
+                sendError(session, "Invalid move.");
+                return;
+            } catch (Exception e) {
+                sendError(session, "Failed to update game after move.");
+                return;
+            }
+            if (moved != null) {
+                broadcastBoard(gameID, moved.game(), move, fetchPly(gameID));
+                notifyMove(gameID, session, move, authToken);
+                return;
+            }
         }
-        broadcastBoard(gameID, board);
-        notifyMove(gameID, session, move, authToken);
+        sendError(session, "Game is busy, try again.");
     }
 
-    private void handleResign(Session session, UserGameCommand command, int gameID, String authToken)
-            throws IOException {
+    private void handleResign(Session session, UserGameCommand command, int gameID, String authToken) {
         //get game and player info
         GameData gameData;
         try {
-            gameData = gameService.dao.getGame(gameID);
+            gameData = gameService.games.get(gameID);
         } catch (Exception e) {
             ServerMessage errorMsg = new ServerMessage(
                     ServerMessage.ServerMessageType.ERROR,
                     "Data access error while fetching game."
             );
-            session.getRemote().sendString(GSON.toJson(errorMsg));
+            reply(session, errorMsg);
             return;
         }
         //game is already over can't resign
@@ -217,7 +292,7 @@ public class WebSocketServer {
                     ServerMessage.ServerMessageType.ERROR,
                     "Game is already over."
             );
-            session.getRemote().sendString(GSON.toJson(errorMsg));
+            reply(session, errorMsg);
             return;
         }
         String username = null;
@@ -244,25 +319,21 @@ public class WebSocketServer {
                     ServerMessage.ServerMessageType.ERROR,
                     "Observers cannot resign."
             );
-            session.getRemote().sendString(GSON.toJson(errorMsg));
+            reply(session, errorMsg);
             return;
         }
-        gameData.game().setGameOver(true);
         //save updated game state
         try {
-            gameService.dao.updateGame(new GameData(
-                    gameData.gameID(),
-                    gameData.whiteUsername(),
-                    gameData.blackUsername(),
-                    gameData.gameName(),
-                    gameData.game()
-            ));
+            gameService.games.update(gameID, game -> {
+                game.game().setGameOver(true);
+                return game;
+            });
         } catch (Exception e) {
             ServerMessage errorMsg = new ServerMessage(
                     ServerMessage.ServerMessageType.ERROR,
                     "Failed to update game after resign."
             );
-            session.getRemote().sendString(GSON.toJson(errorMsg));
+            reply(session, errorMsg);
             return;
         }
         //notify all players
@@ -272,21 +343,32 @@ public class WebSocketServer {
                 ServerMessage.ServerMessageType.NOTIFICATION,
                 resignMsg
         );
-        for (Session s : sessions) {
-            if (s.isOpen()) {
-                s.getRemote().sendString(GSON.toJson(notification));
-            }
+        BROADCASTER.sendAll(sessions, null, notification);
+    }
+
+    //a MOVES client that lost track of the game gets the whole board again, and nobody else hears of it
+    private void handleResync(Session session, int gameID) {
+        if (!Integer.valueOf(gameID).equals(SESSION_GAME_MAP.get(session))) {
+            sendError(session, "Not connected to this game.");
+            return;
+        }
+        GameData gameData = fetchGameData(session, gameID);
+        if (gameData == null) {
+            return;
         }
+        var format = SESSION_BOARD_FORMAT.getOrDefault(session, UserGameCommand.BoardFormat.JSON);
+        ServerMessage loadGameMsg = loadGameMessage(gameData.game(), null, format, fetchPly(gameID));
+        reply(session, loadGameMsg);
     }
 
-    private void handleLeave(Session session, UserGameCommand command, int gameID, String authToken)
-            throws IOException {
+    private void handleLeave(Session session, UserGameCommand command, int gameID, String authToken) {
         //remove the session from the game
         Set<Session> sessions = GAME_SESSIONS.get(gameID);
         if (sessions != null) {
             sessions.remove(session);
         }
         SESSION_GAME_MAP.remove(session);
+        SESSION_BOARD_FORMAT.remove(session);
         //get username for the notification
         String username = null;
         try {
@@ -297,30 +379,21 @@ public class WebSocketServer {
         } catch (Exception e) {
             //ignore
         }
-        GameData gameData = null;
-        try {
-            gameData = gameService.dao.getGame(gameID);
-        } catch (Exception e) {
-            // ignore
-        }
-        String newWhite = gameData.whiteUsername();
-        String newBlack = gameData.blackUsername();
-        if (username != null && gameData != null) {
-            if (username.equals(gameData.whiteUsername())) {
-                newWhite = null;
-            } else if (username.equals(gameData.blackUsername())) {
-                newBlack = null;
-            }
-        }
         //save the updated GameData
+        String leaver = username;
         try {
-            gameService.dao.updateGame(new GameData(
-                    gameData.gameID(),
-                    newWhite,
-                    newBlack,
-                    gameData.gameName(),
-                    gameData.game()
-            ));
+            gameService.games.update(gameID, gameData -> {
+                String newWhite = gameData.whiteUsername();
+                String newBlack = gameData.blackUsername();
+                if (leaver != null) {
+                    if (leaver.equals(gameData.whiteUsername())) {
+                        newWhite = null;
+                    } else if (leaver.equals(gameData.blackUsername())) {
+                        newBlack = null;
+                    }
+                }
+                return new GameData(gameData.gameID(), newWhite, newBlack, gameData.gameName(), gameData.game());
+            });
         } catch (Exception e) {
             //ignore
         }
@@ -331,18 +404,17 @@ public class WebSocketServer {
                 leaveMsg
         );
         //notify all other sessions (not the leaver)
-        if (sessions != null) {
-            for (Session s : sessions) {
-                if (s != session && s.isOpen()) {
-                    s.getRemote().sendString(GSON.toJson(notification));
-                }
-            }
-        }
+        BROADCASTER.sendAll(sessions, session, notification);
     }
 
-    private void sendError(Session session, String message) throws IOException {
+    private void sendError(Session session, String message) {
         ServerMessage errorMsg = new ServerMessage(ServerMessage.ServerMessageType.ERROR, message);
-        session.getRemote().sendString(GSON.toJson(errorMsg));
+        reply(session, errorMsg);
+    }
+
+    //answers one session directly, in the wire format it connected with and queued behind its broadcasts
+    private void reply(Session session, ServerMessage message) {
+        BROADCASTER.send(session, message);
     }
 
     private boolean isValidGameID(int gameID) {
@@ -355,15 +427,36 @@ public class WebSocketServer {
         return "" + file + rank;
     }
 
-    private GameData fetchGameData(Session session, int gameID) throws IOException {
+    //another server changed the game under the cache, so everyone gets the stored game again
+    private static void broadcastReload(int gameID) throws Exception {
+        Set<Session> sessions = GAME_SESSIONS.get(gameID);
+        GameData gameData = gameService.games.get(gameID);
+        if (sessions == null || gameData == null) {
+            return;
+        }
+        broadcastBoard(gameID, gameData.game(), null, fetchPly(gameID));
+        BROADCASTER.sendAll(sessions, null, new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
+                "The game was changed on another server and has been reloaded."));
+    }
+
+    private GameData fetchGameData(Session session, int gameID) {
         try {
-            return gameService.dao.getGame(gameID);
+            return gameService.games.get(gameID);
         } catch (Exception e) {
             sendError(session, "Data access error while fetching game.");
             return null;
         }
     }
 
+    //only MOVES clients use the ply, so a failed lookup just leaves them to resync
+    private static int fetchPly(int gameID) {
+        try {
+            return gameService.games.ply(gameID);
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
     private String fetchUsername(String authToken) {
         try {
             AuthData auth = gameService.dao.getAuth(authToken);
@@ -386,6 +479,11 @@ public class WebSocketServer {
         return null;
     }
 
+    private static boolean onBoard(ChessPosition position) {
+        return position != null && position.getRow() >= 1 && position.getRow() <= 8
+                && position.getColumn() >= 1 && position.getColumn() <= 8;
+    }
+
     private boolean isValidMoveAttempt(ChessGame chessGame, ChessMove move, ChessGame.TeamColor playerColor) {
         if (playerColor == null || chessGame.getTeamTurn() != playerColor) {
             return false;
@@ -394,47 +492,58 @@ public class WebSocketServer {
         return piece != null && piece.getTeamColor() == playerColor;
     }
 
-    private boolean applyMove(Session session, ChessGame chessGame, ChessMove move) throws IOException {
-        try {
-            chessGame.makeMove(move);
-            return true;
-        } catch (Exception e) {
-            sendError(session, "Invalid move.");
-            return false;
+    private static ServerMessage loadGameMessage(ChessGame game, String playerColor, UserGameCommand.BoardFormat format,
+                                          int ply) {
+        if (format == UserGameCommand.BoardFormat.FEN) {
+            return ServerMessage.loadGameFen(game.toFen(), playerColor);
         }
-    }
-
-    private boolean updateGameState(Session session, GameService gameService, GameData gameData, ChessGame chessGame) throws IOException {
-        try {
-            gameService.dao.updateGame(new GameData(
-                    gameData.gameID(),
-                    gameData.whiteUsername(),
-                    gameData.blackUsername(),
-                    gameData.gameName(),
-                    chessGame
-            ));
-            return true;
-        } catch (Exception e) {
-            sendError(session, "Failed to update game after move.");
-            return false;
+        if (format == UserGameCommand.BoardFormat.MOVES) {
+            return ServerMessage.loadGameFen(game.toFen(), playerColor, ply);
         }
+        return new ServerMessage(ServerMessage.ServerMessageType.LOAD_GAME, game.getBoard(), playerColor);
     }
 
-    private void broadcastBoard(int gameID, ChessBoard board) throws IOException {
+    //MOVES clients get just the move, or the board and its ply when there is none; everyone else the whole board
+    private static void broadcastBoard(int gameID, ChessGame game, ChessMove move, int ply) {
         Set<Session> sessions = GAME_SESSIONS.get(gameID);
-        ServerMessage loadGameMsg = new ServerMessage(
-                ServerMessage.ServerMessageType.LOAD_GAME,
-                board,
-                null
-        );
+        if (sessions == null) {
+            return;
+        }
+        //each format is built at most once for the whole broadcast, and serialized at most once per wire format
+        Broadcaster.Outgoing jsonBoard = null;
+        Broadcaster.Outgoing fenBoard = null;
+        Broadcaster.Outgoing moveApplied = null;
+        Broadcaster.Outgoing plyBoard = null;
         for (Session s : sessions) {
-            if (s.isOpen()) {
-                s.getRemote().sendString(GSON.toJson(loadGameMsg));
+            if (!s.isOpen()) {
+                continue;
+            }
+            var format = SESSION_BOARD_FORMAT.getOrDefault(s, UserGameCommand.BoardFormat.JSON);
+            if (format == UserGameCommand.BoardFormat.MOVES && move == null) {
+                if (plyBoard == null) {
+                    plyBoard = BROADCASTER.outgoing(loadGameMessage(game, null, format, ply));
+                }
+                plyBoard.sendTo(s);
+            } else if (format == UserGameCommand.BoardFormat.MOVES) {
+                if (moveApplied == null) {
+                    moveApplied = BROADCASTER.outgoing(ServerMessage.moveApplied(move, ply, game.positionKey()));
+                }
+                moveApplied.sendTo(s);
+            } else if (format == UserGameCommand.BoardFormat.FEN) {
+                if (fenBoard == null) {
+                    fenBoard = BROADCASTER.outgoing(loadGameMessage(game, null, format, ply));
+                }
+                fenBoard.sendTo(s);
+            } else {
+                if (jsonBoard == null) {
+                    jsonBoard = BROADCASTER.outgoing(loadGameMessage(game, null, format, ply));
+                }
+                jsonBoard.sendTo(s);
             }
         }
     }
 
-    private void notifyMove(int gameID, Session moverSession, ChessMove move, String authToken) throws IOException {
+    private void notifyMove(int gameID, Session moverSession, ChessMove move, String authToken) {
         Set<Session> sessions = GAME_SESSIONS.get(gameID);
         String moverUsername = fetchUsername(authToken);
 
@@ -450,10 +559,6 @@ public class WebSocketServer {
                 moveDesc
         );
 
-        for (Session s : sessions) {
-            if (s != moverSession && s.isOpen()) {
-                s.getRemote().sendString(GSON.toJson(notifyMsg));
-            }
-        }
+        BROADCASTER.sendAll(sessions, moverSession, notifyMsg);
     }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package dataaccess;
+
+import model.AuthData;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthCachingDataAccessTest {
+    private int lookups = 0;
+    private final MemoryDataAccess backing = new MemoryDataAccess() {
+        @Override
+        public AuthData getAuth(String authToken) throws DataAccessException {
+            lookups++;
+            return super.getAuth(authToken);
+        }
+    };
+
+    private AuthCachingDataAccess newCache(int maxEntries, long ttl, long negativeTtl) {
+        return new AuthCachingDataAccess(backing, new AuthCachingDataAccess.Settings(maxEntries, ttl, negativeTtl));
+    }
+
+    @Test
+    public void cachedLookupPositive() throws DataAccessException {
+        AuthCachingDataAccess dao = newCache(100, 60_000, 60_000);
+        AuthData auth = new AuthData("token", "user");
+        dao.insertAuth(auth);
+
+        assertEquals(auth, dao.getAuth("token"));
+        assertEquals(auth, dao.getAuth("token"));
+        assertEquals(0, lookups);
+    }
+
+    @Test
+    public void unknownTokenCachedNegative() throws DataAccessException {
+        AuthCachingDataAccess dao = newCache(100, 60_000, 60_000);
+        assertNull(dao.getAuth("bogus"));
+        assertNull(dao.getAuth("bogus"));
+        assertEquals(1, lookups);
+    }
+
+    @Test
+    public void logoutInvalidatesNegative() throws DataAccessException {
+        AuthCachingDataAccess dao = newCache(100, 60_000, 60_000);
+        dao.insertAuth(new AuthData("token", "user"));
+        dao.getAuth("token");
+
+        dao.deleteAuth("token");
+        assertNull(dao.getAuth("token"));
+        assertNull(backing.getAuth("token"));
+    }
+
+    @Test
+    public void expiredEntryReloadedPositive() throws DataAccessException, InterruptedException {
+        AuthCachingDataAccess dao = newCache(100, 1, 1);
+        backing.insertAuth(new AuthData("token", "user"));
+        dao.getAuth("token");
+        Thread.sleep(5);
+        assertNotNull(dao.getAuth("token"));
+        assertEquals(2, lookups);
+    }
+
+    @Test
+    public void boundedSizePositive() throws DataAccessException {
+        AuthCachingDataAccess dao = newCache(10, 60_000, 60_000);
+        for (int i = 0; i < 50; i++) {
+            dao.getAuth("bogus" + i);
+        }
+        assertTrue(dao.cachedAuths() <= 10);
+    }
+}
@@ -0,0 +1,155 @@
+package dataaccess;
+
+import org.junit.jupiter.api.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchWriterTest {
+    //each executed batch as "sql x size", plus "update sql" and "commit" entries, in order
+    private final List<String> log = new ArrayList<>();
+    private BatchWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private void newWriter(int maxBatchSize, long maxDelayMillis) {
+        writer = new BatchWriter(this::fakeConnection, new BatchWriter.Settings(maxBatchSize, maxDelayMillis));
+    }
+
+    @Test
+    void coalescesWritesPositive() throws Exception {
+        newWriter(100, 200);
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(writer.submit("INSERT a", "token" + i));
+        }
+        for (CompletableFuture<Integer> result : results) {
+            assertEquals(1, result.get());
+        }
+        assertEquals(List.of("INSERT a x 10", "commit"), log());
+    }
+
+    @Test
+    void keepsOrderAcrossStatementsPositive() throws Exception {
+        newWriter(100, 200);
+        writer.submit("INSERT a", "x");
+        writer.submit("INSERT a", "y");
+        writer.submit("DELETE a", "x");
+        writer.submit("INSERT a", "z").get();
+        assertEquals(List.of("INSERT a x 2", "DELETE a x 1", "INSERT a x 1", "commit"), log());
+    }
+
+    @Test
+    void flushOnSizePositive() throws Exception {
+        newWriter(3, 200);
+        CompletableFuture<Integer> last = null;
+        for (int i = 0; i < 7; i++) {
+            last = writer.submit("INSERT a", i);
+        }
+        last.get();
+        assertEquals(List.of("INSERT a x 3", "commit", "INSERT a x 3", "commit", "INSERT a x 1", "commit"), log());
+    }
+
+    @Test
+    void failedWriteIsolatedNegative() throws Exception {
+        newWriter(100, 200);
+        CompletableFuture<Integer> good = writer.submit("INSERT a", "ok");
+        CompletableFuture<Integer> bad = writer.submit("INSERT a", "bad");
+
+        assertEquals(1, good.get());
+        ExecutionException error = assertThrows(ExecutionException.class, bad::get);
+        assertInstanceOf(SQLException.class, error.getCause());
+        assertEquals(List.of("update INSERT a", "update INSERT a"), log().subList(1, 3));
+    }
+
+    @Test
+    void countUnknownPositive() throws Exception {
+        newWriter(100, 200);
+        CompletableFuture<Integer> first = writer.submit("INSERT a", "unknown");
+        CompletableFuture<Integer> second = writer.submit("INSERT a", "unknown");
+        assertEquals(Statement.SUCCESS_NO_INFO, first.get());
+        assertEquals(Statement.SUCCESS_NO_INFO, second.get());
+    }
+
+    @Test
+    void submitAfterCloseNegative() {
+        newWriter(100, 0);
+        writer.close();
+        assertThrows(ExecutionException.class, () -> writer.submit("INSERT a", "late").get());
+    }
+
+    private List<String> log() {
+        synchronized (log) {
+            return new ArrayList<>(log);
+        }
+    }
+
+    private void record(String entry) {
+        synchronized (log) {
+            log.add(entry);
+        }
+    }
+
+    private Connection fakeConnection() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "prepareStatement" -> fakeStatement((String) args[0]);
+                    case "commit" -> {
+                        record("commit");
+                        yield null;
+                    }
+                    default -> null;
+                });
+    }
+
+    //fails any batch or update that has "bad" bound
+    private PreparedStatement fakeStatement(String sql) {
+        List<Object> batch = new ArrayList<>();
+        Object[] current = new Object[1];
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "setObject" -> {
+                        current[0] = args[1];
+                        yield null;
+                    }
+                    case "addBatch" -> {
+                        batch.add(current[0]);
+                        yield null;
+                    }
+                    case "executeBatch" -> {
+                        if (batch.contains("bad")) {
+                            record("failed batch");
+                            throw new SQLException("bad write");
+                        }
+                        record(sql + " x " + batch.size());
+                        int[] counts = new int[batch.size()];
+                        //a rewritten batch may not know how many rows each write changed
+                        Arrays.fill(counts, batch.contains("unknown") ? Statement.SUCCESS_NO_INFO : 1);
+                        yield counts;
+                    }
+                    case "executeUpdate" -> {
+                        record("update " + sql);
+                        if ("bad".equals(current[0])) {
+                            throw new SQLException("bad write");
+                        }
+                        yield 1;
+                    }
+                    default -> null;
+                });
+    }
+}
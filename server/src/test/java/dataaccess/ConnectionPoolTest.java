@@ -0,0 +1,155 @@
+package dataaccess;
+
+import org.junit.jupiter.api.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+    private final List<FakeConnection> opened = new ArrayList<>();
+    private ConnectionPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private ConnectionPool newPool(int size, long idleTimeout, long leakThreshold) {
+        pool = new ConnectionPool(() -> {
+            FakeConnection fake = new FakeConnection();
+            opened.add(fake);
+            return fake.connection;
+        }, new ConnectionPool.Settings(size, 50, idleTimeout, leakThreshold));
+        return pool;
+    }
+
+    @Test
+    void reusesReturnedConnectionPositive() throws SQLException {
+        newPool(2, 0, 0);
+        try (var conn = pool.getConnection()) {
+            assertFalse(conn.isClosed());
+        }
+        try (var conn = pool.getConnection()) {
+            assertFalse(conn.isClosed());
+        }
+        ConnectionPool.Stats stats = pool.stats();
+        assertEquals(1, stats.created());
+        assertEquals(2, stats.borrowed());
+        assertEquals(1, stats.idle());
+        assertEquals(0, stats.active());
+        assertFalse(opened.get(0).closed);
+    }
+
+    @Test
+    void closedHandleNegative() throws SQLException {
+        newPool(1, 0, 0);
+        Connection conn = pool.getConnection();
+        conn.close();
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::createStatement);
+        assertDoesNotThrow(conn::close);
+        assertEquals(1, pool.stats().idle());
+    }
+
+    @Test
+    void borrowTimeoutNegative() throws SQLException {
+        newPool(1, 0, 0);
+        try (var held = pool.getConnection()) {
+            assertThrows(SQLException.class, pool::getConnection);
+        }
+        assertEquals(1, pool.stats().timeouts());
+        assertDoesNotThrow(() -> pool.getConnection().close());
+    }
+
+    @Test
+    void invalidConnectionReplacedPositive() throws SQLException {
+        newPool(1, 0, 0);
+        pool.getConnection().close();
+        opened.get(0).valid = false;
+        //past the window in which a just-returned connection skips validation
+        sleep(600);
+
+        pool.getConnection().close();
+        assertEquals(2, pool.stats().created());
+        assertEquals(1, pool.stats().invalid());
+        assertTrue(opened.get(0).closed);
+    }
+
+    @Test
+    void openTransactionRolledBackOnReturnPositive() throws SQLException {
+        newPool(1, 0, 0);
+        try (var conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+        }
+        assertTrue(opened.get(0).rolledBack);
+        assertTrue(opened.get(0).autoCommit);
+    }
+
+    @Test
+    void idleEvictionPositive() throws SQLException {
+        newPool(2, 1_000, 0);
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        first.close();
+        second.close();
+
+        pool.evictIdle(System.currentTimeMillis() + 10_000);
+        assertEquals(0, pool.stats().idle());
+        assertEquals(2, pool.stats().evicted());
+        assertTrue(opened.stream().allMatch(fake -> fake.closed));
+    }
+
+    @Test
+    void leakDetectionPositive() throws SQLException {
+        newPool(1, 0, 1_000);
+        try (var conn = pool.getConnection()) {
+            pool.detectLeaks(System.currentTimeMillis());
+            assertEquals(0, pool.stats().leaks());
+            pool.detectLeaks(System.currentTimeMillis() + 5_000);
+            pool.detectLeaks(System.currentTimeMillis() + 10_000);
+            assertEquals(1, pool.stats().leaks());
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //just enough of a Connection for the pool's bookkeeping
+    private static final class FakeConnection {
+        boolean closed = false;
+        boolean valid = true;
+        boolean autoCommit = true;
+        boolean rolledBack = false;
+        final Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "close" -> {
+                        closed = true;
+                        yield null;
+                    }
+                    case "isClosed" -> closed;
+                    case "isValid" -> valid && !closed;
+                    case "getAutoCommit" -> autoCommit;
+                    case "setAutoCommit" -> {
+                        autoCommit = (Boolean) args[0];
+                        yield null;
+                    }
+                    case "rollback" -> {
+                        rolledBack = true;
+                        yield null;
+                    }
+                    default -> null;
+                });
+    }
+}
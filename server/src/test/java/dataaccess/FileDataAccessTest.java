@@ -0,0 +1,136 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import model.AuthData;
+import model.GameData;
+import model.UserData;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileDataAccessTest {
+    private static final ChessMove E4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+    private static final ChessMove E5 = new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null);
+
+    @TempDir
+    Path directory;
+
+    private FileDataAccess open(int segmentBytes) throws DataAccessException {
+        return new FileDataAccess(new FileDataAccess.Settings(directory, segmentBytes, false));
+    }
+
+    //moves are only logged, as the game cache does, and show up when the game is read
+    private static void play(FileDataAccess dao, int gameID, ChessMove move) throws Exception {
+        dao.appendMove(gameID, move);
+    }
+
+    @Test
+    public void recoverWithoutClosePositive() throws Exception {
+        FileDataAccess dao = open(64 * 1024);
+        dao.insertUser(new UserData("user", "pass", "email"));
+        dao.insertAuth(new AuthData("token", "user"));
+        dao.insertAuth(new AuthData("gone", "user"));
+        dao.deleteAuth("gone");
+        int gameID = dao.insertGame(new GameData(0, null, null, "game", new ChessGame()));
+        dao.updateGame(new GameData(gameID, "user", null, "game", dao.getGame(gameID).game()));
+        play(dao, gameID, E4);
+
+        //no close, as if the process died
+        FileDataAccess reopened = open(64 * 1024);
+        assertTrue(reopened.verifyUser("user", "pass"));
+        assertNotEquals("pass", reopened.getUser("user").password());
+        assertEquals("user", reopened.getAuth("token").username());
+        assertNull(reopened.getAuth("gone"));
+        GameData game = reopened.getGame(gameID);
+        assertEquals("user", game.whiteUsername());
+        assertEquals(ChessGame.TeamColor.BLACK, game.game().getTeamTurn());
+        assertEquals(List.of(E4), reopened.loadMoves(gameID));
+        assertEquals(gameID + 1, reopened.insertGame(new GameData(0, null, null, "next", new ChessGame())));
+    }
+
+    @Test
+    public void compactionPositive() throws Exception {
+        FileDataAccess dao = open(1024);
+        int gameID = dao.insertGame(new GameData(0, null, null, "game", new ChessGame()));
+        //enough writes to fill the small segment many times over
+        for (int i = 0; i < 100; i++) {
+            dao.insertAuth(new AuthData("token" + i, "user"));
+        }
+        play(dao, gameID, E4);
+        dao.updateGame(new GameData(gameID, "white", null, "game", dao.getGame(gameID).game()));
+        play(dao, gameID, E5);
+        dao.compact();
+        //played on a copy and never logged, so it must not reach the snapshot
+        dao.getGame(gameID).game().makeMove(
+                new ChessMove(new ChessPosition(2, 4), new ChessPosition(4, 4), null));
+        dao.close();
+
+        FileDataAccess reopened = open(1024);
+        assertNotNull(reopened.getAuth("token0"));
+        assertNotNull(reopened.getAuth("token99"));
+        assertEquals(List.of(E4, E5), reopened.loadMoves(gameID));
+        assertEquals("white", reopened.getGame(gameID).whiteUsername());
+        assertEquals(ChessGame.TeamColor.WHITE, reopened.getGame(gameID).game().getTeamTurn());
+    }
+
+    @Test
+    public void tornRecordNegative() throws Exception {
+        FileDataAccess dao = open(64 * 1024);
+        dao.insertAuth(new AuthData("first", "user"));
+        dao.insertAuth(new AuthData("last-written", "user"));
+        corrupt(directory.resolve("log.dat"), "last-written");
+
+        FileDataAccess reopened = open(64 * 1024);
+        assertNotNull(reopened.getAuth("first"));
+        assertNull(reopened.getAuth("last-written"));
+        //writing carries on from where the log was cut off
+        reopened.insertAuth(new AuthData("after", "user"));
+        assertNotNull(open(64 * 1024).getAuth("after"));
+    }
+
+    @Test
+    public void corruptSnapshotNegative() throws Exception {
+        FileDataAccess dao = open(64 * 1024);
+        dao.insertAuth(new AuthData("token", "user"));
+        dao.close();
+        corrupt(directory.resolve("snapshot.dat"), "token");
+
+        assertThrows(DataAccessException.class, () -> open(64 * 1024));
+    }
+
+    @Test
+    public void clearPositive() throws Exception {
+        FileDataAccess dao = open(64 * 1024);
+        dao.insertUser(new UserData("user", "pass", "email"));
+        dao.insertGame(new GameData(0, null, null, "game", new ChessGame()));
+        dao.clear();
+
+        FileDataAccess reopened = open(64 * 1024);
+        assertNull(reopened.getUser("user"));
+        assertTrue(reopened.listGames().isEmpty());
+        assertEquals(1, reopened.insertGame(new GameData(0, null, null, "game", new ChessGame())));
+    }
+
+    //flips a byte of the first place text appears in the file
+    private static void corrupt(Path file, String text) throws Exception {
+        byte[] bytes = Files.readAllBytes(file);
+        byte[] needle = text.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i <= bytes.length - needle.length; i++) {
+            if (Arrays.equals(bytes, i, i + needle.length, needle, 0, needle.length)) {
+                bytes[i] ^= 0x5a;
+                Files.write(file, bytes);
+                return;
+            }
+        }
+        fail(text + " not found in " + file);
+    }
+}
@@ -0,0 +1,118 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import model.GameData;
+import model.UserData;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoryDataAccessTest {
+    private MemoryDataAccess dao;
+
+    @BeforeEach
+    public void setup() {
+        dao = new MemoryDataAccess();
+    }
+
+    @Test
+    public void insertGameAssignsIdsPositive() throws DataAccessException {
+        int first = dao.insertGame(new GameData(0, null, null, "one", new ChessGame()));
+        int second = dao.insertGame(new GameData(0, null, null, "two", new ChessGame()));
+        assertEquals(1, first);
+        assertEquals(2, second);
+        assertEquals("two", dao.getGame(second).gameName());
+        assertEquals(second, dao.getGame(second).gameID());
+
+        dao.clear();
+        assertEquals(1, dao.insertGame(new GameData(0, null, null, "again", new ChessGame())));
+    }
+
+    @Test
+    public void concurrentWritesPositive() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> ids = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                ids.add(pool.submit(() -> dao.insertGame(new GameData(0, null, null, "game", new ChessGame()))));
+            }
+            Set<Integer> unique = new HashSet<>();
+            for (Future<Integer> id : ids) {
+                unique.add(id.get());
+            }
+            assertEquals(200, unique.size());
+
+            ChessMove move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+            List<Future<Integer>> plies = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                plies.add(pool.submit(() -> dao.appendMove(1, move)));
+            }
+            Set<Integer> uniquePlies = new HashSet<>();
+            for (Future<Integer> ply : plies) {
+                uniquePlies.add(ply.get());
+            }
+            assertEquals(100, uniquePlies.size());
+            assertEquals(100, dao.loadMoves(1).size());
+            assertEquals(100, dao.moveCount(1));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void gamesAreCopiesPositive() throws Exception {
+        int gameID = dao.insertGame(new GameData(0, null, null, "game", new ChessGame()));
+        ChessMove e4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        dao.getGame(gameID).game().makeMove(e4);
+        dao.listGames().get(0).game().makeMove(e4);
+        assertEquals(ChessGame.TeamColor.WHITE, dao.getGame(gameID).game().getTeamTurn());
+
+        dao.appendMove(gameID, e4);
+        assertEquals(ChessGame.TeamColor.BLACK, dao.getGame(gameID).game().getTeamTurn());
+        assertEquals(ChessGame.TeamColor.BLACK, dao.listGames().get(0).game().getTeamTurn());
+    }
+
+    @Test
+    public void updateGameNegative() {
+        assertThrows(DataAccessException.class, () ->
+                dao.updateGame(new GameData(7, null, null, "missing", new ChessGame())));
+        assertThrows(DataAccessException.class, () -> dao.appendMove(7,
+                new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null)));
+    }
+
+    @Test
+    public void updateGameIfVersionNegative() throws DataAccessException {
+        int gameID = dao.insertGame(new GameData(0, null, null, "game", new ChessGame()));
+        GameData read = dao.getGame(gameID);
+        dao.updateGame(new GameData(gameID, "white", null, "game", read.game()));
+
+        assertFalse(dao.updateGameIfVersion(new GameData(gameID, null, "black", "game", read.game(), 1),
+                read.version()));
+        assertEquals("white", dao.getGame(gameID).whiteUsername());
+        assertTrue(dao.updateGameIfVersion(new GameData(gameID, "white", "black", "game", read.game(), 2), 1));
+        assertEquals(2, dao.getGame(gameID).version());
+    }
+
+    @Test
+    public void verifyUserPositive() throws DataAccessException {
+        dao.insertUser(new UserData("user", "pass", "email"));
+        assertTrue(dao.verifyUser("user", "pass"));
+        assertFalse(dao.verifyUser("user", "wrong"));
+    }
+
+    @Test
+    public void insertUserNegativeDuplicate() throws DataAccessException {
+        dao.insertUser(new UserData("user", "pass", "email"));
+        assertThrows(DataAccessException.class, () -> dao.insertUser(new UserData("user", "other", "email")));
+    }
+}
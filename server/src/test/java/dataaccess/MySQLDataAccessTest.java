@@ -2,11 +2,21 @@ package dataaccess;
 
 import model.UserData;
 import model.GameData;
+import model.GameSummary;
 import model.AuthData;
 import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
 import org.junit.jupiter.api.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -146,6 +156,33 @@ public class MySQLDataAccessTest {
         assertEquals("newName", fromDb.gameName());
     }
 
+    @Test
+    void updateGameIfVersionPositive() throws DataAccessException {
+        ChessGame game = new ChessGame();
+        int gameId = dao.insertGame(new GameData(0, null, null, "gameName", game));
+        dao.appendMove(gameId, new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        int version = dao.getGame(gameId).version();
+        assertEquals(1, version);
+
+        assertTrue(dao.updateGameIfVersion(new GameData(gameId, "white", null, "gameName", game, version + 1),
+                version));
+        GameData fromDb = dao.getGame(gameId);
+        assertEquals("white", fromDb.whiteUsername());
+        assertEquals(version + 1, fromDb.version());
+    }
+
+    @Test
+    void updateGameIfVersionNegativeStale() throws DataAccessException {
+        ChessGame game = new ChessGame();
+        int gameId = dao.insertGame(new GameData(0, null, null, "gameName", game));
+        dao.updateGame(new GameData(gameId, null, "black", "gameName", game));
+
+        assertFalse(dao.updateGameIfVersion(new GameData(gameId, "white", null, "gameName", game, 1), 0));
+        assertNull(dao.getGame(gameId).whiteUsername());
+        assertThrows(DataAccessException.class, () ->
+                dao.updateGameIfVersion(new GameData(12345, "white", null, "gameName", game, 1), 0));
+    }
+
     @Test
     void updateGameNegativeNotFound() {
         ChessGame game = new ChessGame();
@@ -166,6 +203,114 @@ public class MySQLDataAccessTest {
         assertTrue(games.stream().anyMatch(g -> g.gameName().equals("game2")));
     }
 
+    @Test
+    void listGameSummariesPositive() throws DataAccessException {
+        int first = dao.insertGame(new GameData(0, "white", null, "page1", new ChessGame()));
+        int second = dao.insertGame(new GameData(0, null, "black", "page2", new ChessGame()));
+        dao.insertGame(new GameData(0, null, null, "page3", new ChessGame()));
+
+        List<GameSummary> page = dao.listGameSummaries(0, 2);
+        assertEquals(List.of(new GameSummary(first, "white", null, "page1"),
+                new GameSummary(second, null, "black", "page2")), page);
+        List<GameSummary> rest = dao.listGameSummaries(second, 2);
+        assertEquals(1, rest.size());
+        assertEquals("page3", rest.get(0).gameName());
+    }
+
+    @Test
+    void listGameSummariesNegativePastEnd() throws DataAccessException {
+        int only = dao.insertGame(new GameData(0, null, null, "only", new ChessGame()));
+        assertTrue(dao.listGameSummaries(only, 10).isEmpty());
+    }
+
+    //Move log tests
+
+    @Test
+    void appendMovePositive() throws DataAccessException, InvalidMoveException {
+        int gameId = dao.insertGame(new GameData(0, "white", "black", "moves", new ChessGame()));
+        ChessMove first = ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+        ChessMove second = ChessMove.of(ChessPosition.of(7, 5), ChessPosition.of(5, 5), null);
+        assertEquals(1, dao.appendMove(gameId, first));
+        assertEquals(2, dao.appendMove(gameId, second));
+
+        assertEquals(List.of(first, second), dao.loadMoves(gameId));
+        assertEquals(2, dao.moveCount(gameId));
+        ChessGame expected = new ChessGame();
+        expected.makeMove(first);
+        expected.makeMove(second);
+        assertEquals(expected, dao.getGame(gameId).game());
+    }
+
+    @Test
+    void appendMoveConcurrentPositive() throws Exception {
+        int gameId = dao.insertGame(new GameData(0, "white", "black", "race", new ChessGame()));
+        ChessMove move = ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+        int threads = 8;
+        int perThread = 10;
+        List<Integer> plies = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> appends = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                appends.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        plies.add(dao.appendMove(gameId, move));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> append : appends) {
+                append.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        //every append got its own ply, with no gaps and no deadlocks
+        Collections.sort(plies);
+        for (int i = 0; i < threads * perThread; i++) {
+            assertEquals(i + 1, plies.get(i));
+        }
+        assertEquals(threads * perThread, dao.loadMoves(gameId).size());
+    }
+
+    @Test
+    void appendMoveNegativeNoGame() {
+        ChessMove move = ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+        assertThrows(DataAccessException.class, () -> dao.appendMove(9999, move));
+    }
+
+    @Test
+    void moveCountNegativeNoGame() throws DataAccessException {
+        assertEquals(0, dao.moveCount(9999));
+    }
+
+    @Test
+    void replayFromSnapshotPositive() throws DataAccessException, InvalidMoveException {
+        int gameId = dao.insertGame(new GameData(0, "white", "black", "snapshot", new ChessGame()));
+        ChessGame expected = new ChessGame();
+        //knights out and back, so there are plenty of moves to replay
+        ChessMove[] shuffle = {
+                ChessMove.of(ChessPosition.of(1, 2), ChessPosition.of(3, 3), null),
+                ChessMove.of(ChessPosition.of(8, 2), ChessPosition.of(6, 3), null),
+                ChessMove.of(ChessPosition.of(3, 3), ChessPosition.of(1, 2), null),
+                ChessMove.of(ChessPosition.of(6, 3), ChessPosition.of(8, 2), null)
+        };
+        for (int i = 0; i < 40; i++) {
+            ChessMove move = shuffle[i % shuffle.length];
+            expected.makeMove(move);
+            dao.appendMove(gameId, move);
+        }
+        //the snapshot covers the first 40 moves, leaving one to replay on top of it
+        dao.updateGame(dao.getGame(gameId));
+        ChessMove last = ChessMove.of(ChessPosition.of(2, 4), ChessPosition.of(4, 4), null);
+        expected.makeMove(last);
+        assertEquals(41, dao.appendMove(gameId, last));
+
+        assertEquals(expected, dao.getGame(gameId).game());
+        assertEquals(expected, dao.listGames().get(0).game());
+        assertEquals(41, dao.loadMoves(gameId).size());
+    }
+
     //Clear tests
 
     @Test
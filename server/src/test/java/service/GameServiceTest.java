@@ -11,6 +11,7 @@ import static org.junit.jupiter.api.Assertions.*;
 public class GameServiceTest {
     DataAccess dao;
     UserService userService;
+    GameStateCache games;
     GameService gameService;
     String authToken;
 
@@ -18,12 +19,18 @@ public class GameServiceTest {
     public void setup() throws DataAccessException {
         dao = new MemoryDataAccess();
         userService = new UserService(dao);
-        gameService = new GameService(dao);
+        games = new GameStateCache(dao, GameStateCache.Settings.DEFAULTS);
+        gameService = new GameService(dao, games);
         RegisterResult registerResult = userService.register(new RegisterRequest("user", "pass",
                 "email"));
         authToken = registerResult.authToken();
     }
 
+    @AfterEach
+    public void tearDown() {
+        games.close();
+    }
+
     //Create game
     @Test
     public void testCreateGamePositive() throws DataAccessException {
@@ -49,6 +56,24 @@ public class GameServiceTest {
         assertEquals("Game1", listGamesResult.games().get(0).gameName());
     }
 
+    @Test
+    public void testListGamesPositiveUnpagedByDefault() throws DataAccessException {
+        int total = GameService.DEFAULT_PAGE_SIZE + 20;
+        for (int i = 0; i < total; i++) {
+            gameService.createGameResult(new CreateGameRequest("Game" + i), authToken);
+        }
+        ListGamesResult all = gameService.listGames(authToken);
+        assertEquals(total, all.games().size());
+        assertNull(all.nextAfterGameId());
+
+        //a cursor without a limit pages at the default size
+        ListGamesResult first = gameService.listGames(authToken, 0, null);
+        assertEquals(GameService.DEFAULT_PAGE_SIZE, first.games().size());
+        ListGamesResult rest = gameService.listGames(authToken, first.nextAfterGameId(), null);
+        assertEquals(20, rest.games().size());
+        assertNull(rest.nextAfterGameId());
+    }
+
     @Test
     public void testListGamesNegativeUnauthorized() {
         DataAccessException exception = assertThrows(DataAccessException.class, () ->
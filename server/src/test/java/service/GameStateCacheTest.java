@@ -0,0 +1,246 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import dataaccess.*;
+import model.*;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameStateCacheTest {
+    private static final ChessMove E4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+
+    MemoryDataAccess dao;
+    GameStateCache cache;
+    int gameID;
+
+    @BeforeEach
+    public void setup() throws DataAccessException {
+        dao = new MemoryDataAccess();
+        gameID = dao.insertGame(new GameData(0, null, null, "game", new ChessGame()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    private void newCache(DataAccess dataAccess) {
+        cache = new GameStateCache(dataAccess, new GameStateCache.Settings(2, 100, 60_000, 1_000));
+    }
+
+    @Test
+    public void makeMovePositive() throws Exception {
+        newCache(dao);
+        GameData moved = cache.makeMove(gameID, E4, 0);
+        assertEquals(ChessGame.TeamColor.BLACK, moved.game().getTeamTurn());
+
+        cache.close();
+        assertEquals(List.of(E4), dao.loadMoves(gameID));
+    }
+
+    @Test
+    public void getReturnsCopyPositive() throws Exception {
+        newCache(dao);
+        GameData copy = cache.get(gameID);
+        copy.game().makeMove(E4);
+        assertEquals(ChessGame.TeamColor.WHITE, cache.get(gameID).game().getTeamTurn());
+
+        GameData moved = cache.makeMove(gameID, E4, 0);
+        moved.game().setTeamTurn(ChessGame.TeamColor.WHITE);
+        assertEquals(ChessGame.TeamColor.BLACK, cache.get(gameID).game().getTeamTurn());
+    }
+
+    @Test
+    public void makeMoveNegative() throws DataAccessException {
+        newCache(dao);
+        ChessMove backwards = new ChessMove(new ChessPosition(2, 5), new ChessPosition(1, 5), null);
+        assertThrows(InvalidMoveException.class, () -> cache.makeMove(gameID, backwards, 0));
+        assertThrows(DataAccessException.class, () -> cache.makeMove(gameID + 1, E4, 0));
+
+        cache.close();
+        assertTrue(dao.loadMoves(gameID).isEmpty());
+    }
+
+    @Test
+    public void plyPositive() throws Exception {
+        dao.appendMove(gameID, E4);
+        newCache(dao);
+        assertEquals(1, cache.ply(gameID));
+
+        ChessMove e5 = new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null);
+        cache.makeMove(gameID, e5, cache.get(gameID).version());
+        assertEquals(2, cache.ply(gameID));
+        assertEquals(0, cache.ply(gameID + 1));
+    }
+
+    @Test
+    public void makeMoveNegativeStaleVersion() throws Exception {
+        newCache(dao);
+        int checked = cache.get(gameID).version();
+        cache.update(gameID, game -> game);
+
+        assertNull(cache.makeMove(gameID, E4, checked));
+        assertEquals(ChessGame.TeamColor.WHITE, cache.get(gameID).game().getTeamTurn());
+        assertNotNull(cache.makeMove(gameID, E4, checked + 1));
+    }
+
+    @Test
+    public void updateNowPositive() throws DataAccessException {
+        newCache(dao);
+        cache.updateNow(gameID, game ->
+                new GameData(game.gameID(), "white", game.blackUsername(), game.gameName(), game.game()));
+        assertEquals("white", dao.getGame(gameID).whiteUsername());
+        assertEquals("white", cache.get(gameID).whiteUsername());
+    }
+
+    @Test
+    public void updateNowNegative() throws DataAccessException {
+        newCache(dao);
+        assertThrows(DataAccessException.class, () -> cache.updateNow(gameID, game -> {
+            throw new DataAccessException("Error: already taken");
+        }));
+        assertNull(cache.get(gameID).whiteUsername());
+    }
+
+    @Test
+    public void updateNowNegativeChangedElsewhere() throws DataAccessException {
+        newCache(dao);
+        List<Integer> reloaded = new ArrayList<>();
+        cache.setReloadListener(reloaded::add);
+        cache.get(gameID);
+        //another server seats black behind this cache's back
+        dao.updateGame(new GameData(gameID, null, "black", "game", new ChessGame()));
+
+        assertNull(cache.updateNow(gameID, game ->
+                new GameData(game.gameID(), "white", game.blackUsername(), game.gameName(), game.game())));
+        assertNull(dao.getGame(gameID).whiteUsername());
+        assertEquals(List.of(gameID), reloaded);
+        //the retry sees the other server's change
+        assertEquals("black", cache.get(gameID).blackUsername());
+    }
+
+    @Test
+    public void readsDuringWritePositive() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        newCache(new MemoryDataAccess() {
+            {
+                insertGame(new GameData(0, null, null, "game", new ChessGame()));
+            }
+
+            @Override
+            public boolean updateGameIfVersion(GameData game, int expectedVersion) throws DataAccessException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new DataAccessException("interrupted");
+                }
+                return super.updateGameIfVersion(game, expectedVersion);
+            }
+        });
+        cache.get(gameID);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<GameData> seated = pool.submit(() -> cache.updateNow(gameID, game ->
+                    new GameData(game.gameID(), "white", game.blackUsername(), game.gameName(), game.game())));
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+            //the game can be read while its snapshot is on its way, but a move waits for it
+            assertNull(pool.submit(() -> cache.get(gameID)).get(5, TimeUnit.SECONDS).whiteUsername());
+            Future<GameData> moved = pool.submit(() -> cache.makeMove(gameID, E4, 1));
+            assertThrows(TimeoutException.class, () -> moved.get(200, TimeUnit.MILLISECONDS));
+
+            release.countDown();
+            assertEquals("white", seated.get(5, TimeUnit.SECONDS).whiteUsername());
+            assertEquals("white", moved.get(5, TimeUnit.SECONDS).whiteUsername());
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void evictIdlePositive() throws DataAccessException {
+        newCache(dao);
+        cache.get(gameID);
+        cache.evict(System.currentTimeMillis());
+        assertEquals(1, cache.size());
+
+        cache.evict(System.currentTimeMillis() + 120_000);
+        assertEquals(0, cache.size());
+        assertNotNull(cache.get(gameID));
+    }
+
+    @Test
+    public void evictNegativeUnwrittenGame() throws Exception {
+        //a database that is down keeps the move waiting in memory
+        newCache(new MemoryDataAccess() {
+            {
+                insertGame(new GameData(0, null, null, "game", new ChessGame()));
+            }
+
+            @Override
+            public int appendMove(int gameID, ChessMove move) throws DataAccessException {
+                throw new DataAccessException("database unavailable");
+            }
+        });
+        cache.makeMove(gameID, E4, 0);
+        cache.evict(System.currentTimeMillis() + 120_000);
+        assertEquals(1, cache.size());
+        assertEquals(ChessGame.TeamColor.BLACK, cache.get(gameID).game().getTeamTurn());
+    }
+
+    @Test
+    public void snapshotIntervalPositive() throws Exception {
+        List<Integer> snapshots = new ArrayList<>();
+        MemoryDataAccess counting = new MemoryDataAccess() {
+            {
+                insertGame(new GameData(0, null, null, "game", new ChessGame()));
+            }
+
+            @Override
+            public boolean updateGameIfVersion(GameData game, int expectedVersion) throws DataAccessException {
+                snapshots.add(loadMoves(game.gameID()).size());
+                return super.updateGameIfVersion(game, expectedVersion);
+            }
+        };
+        newCache(counting);
+        ChessMove[] shuffle = {
+                new ChessMove(new ChessPosition(1, 2), new ChessPosition(3, 3), null),
+                new ChessMove(new ChessPosition(8, 2), new ChessPosition(6, 3), null),
+                new ChessMove(new ChessPosition(3, 3), new ChessPosition(1, 2), null),
+                new ChessMove(new ChessPosition(6, 3), new ChessPosition(8, 2), null)
+        };
+        for (int i = 0; i < GameStateCache.SNAPSHOT_INTERVAL + 1; i++) {
+            cache.makeMove(gameID, shuffle[i % shuffle.length], cache.get(gameID).version());
+        }
+        cache.close();
+        assertEquals(GameStateCache.SNAPSHOT_INTERVAL + 1, counting.loadMoves(gameID).size());
+        assertEquals(1, snapshots.size());
+        assertTrue(snapshots.get(0) >= GameStateCache.SNAPSHOT_INTERVAL);
+    }
+
+    @Test
+    public void clearPositive() throws Exception {
+        newCache(dao);
+        cache.makeMove(gameID, E4, 0);
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
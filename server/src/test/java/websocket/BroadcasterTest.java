@@ -0,0 +1,166 @@
+package websocket;
+
+import com.google.gson.Gson;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.*;
+import websocket.codec.MessageCodec;
+import websocket.messages.ServerMessage;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BroadcasterTest {
+    private static final ServerMessage BOARD = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, "board");
+    private static final String BOARD_JSON = new Gson().toJson(BOARD);
+
+    //a session whose sends complete only when the test says so; binary frames are kept as their bytes
+    private static final class FakeSession {
+        final List<Object> sent = new ArrayList<>();
+        final List<WriteCallback> callbacks = new ArrayList<>();
+        boolean open = true;
+        boolean failSends = false;
+        final Session session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+                new Class<?>[]{Session.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "isOpen" -> open;
+                    case "getRemote" -> remote();
+                    case "close" -> {
+                        open = false;
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+
+        private RemoteEndpoint remote() {
+            return (RemoteEndpoint) Proxy.newProxyInstance(RemoteEndpoint.class.getClassLoader(),
+                    new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                        if (failSends) {
+                            throw new IllegalStateException("connection reset");
+                        }
+                        if (args[0] instanceof ByteBuffer bytes) {
+                            byte[] frame = new byte[bytes.remaining()];
+                            bytes.get(frame);
+                            sent.add(frame);
+                        } else {
+                            sent.add(args[0]);
+                        }
+                        callbacks.add((WriteCallback) args[1]);
+                        return null;
+                    });
+        }
+
+        void completeAll() {
+            callbacks.forEach(WriteCallback::writeSuccess);
+            callbacks.clear();
+        }
+    }
+
+    @Test
+    public void sendAllPositive() {
+        Broadcaster broadcaster = new Broadcaster(8);
+        FakeSession mover = new FakeSession();
+        FakeSession spectator = new FakeSession();
+        FakeSession closed = new FakeSession();
+        closed.open = false;
+        register(broadcaster, mover, spectator, closed);
+
+        broadcaster.sendAll(List.of(mover.session, spectator.session, closed.session), mover.session, BOARD);
+        assertEquals(List.of(), mover.sent);
+        assertEquals(List.of(BOARD_JSON), spectator.sent);
+        assertEquals(List.of(), closed.sent);
+        assertEquals(1, broadcaster.pendingSends(spectator.session));
+        spectator.completeAll();
+        assertEquals(0, broadcaster.pendingSends(spectator.session));
+    }
+
+    @Test
+    public void failedSessionIsolatedNegative() {
+        Broadcaster broadcaster = new Broadcaster(8);
+        FakeSession broken = new FakeSession();
+        broken.failSends = true;
+        FakeSession healthy = new FakeSession();
+        register(broadcaster, broken, healthy);
+
+        broadcaster.sendAll(List.of(broken.session, healthy.session), null, BOARD);
+        assertEquals(List.of(BOARD_JSON), healthy.sent);
+        assertEquals(0, broadcaster.pendingSends(broken.session));
+    }
+
+    @Test
+    public void slowSessionClosedNegative() {
+        Broadcaster broadcaster = new Broadcaster(2);
+        FakeSession slow = new FakeSession();
+        FakeSession fast = new FakeSession();
+        register(broadcaster, slow, fast);
+        for (int i = 0; i < 3; i++) {
+            broadcaster.sendAll(List.of(slow.session, fast.session), null,
+                    new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, "move " + i));
+            fast.completeAll();
+        }
+        assertFalse(slow.open);
+        assertEquals(2, slow.sent.size());
+        assertEquals(3, fast.sent.size());
+    }
+
+    @Test
+    public void binarySessionPositive() {
+        Broadcaster broadcaster = new Broadcaster(8);
+        FakeSession bot = new FakeSession();
+        FakeSession otherBot = new FakeSession();
+        FakeSession browser = new FakeSession();
+        register(broadcaster, bot, otherBot, browser);
+        broadcaster.useBinary(bot.session, true);
+        broadcaster.useBinary(otherBot.session, true);
+
+        broadcaster.sendAll(List.of(bot.session, otherBot.session, browser.session), null, BOARD);
+        byte[] frame = (byte[]) bot.sent.get(0);
+        assertEquals(BOARD, MessageCodec.decodeMessage(frame, 0, frame.length));
+        //both read the whole of the one shared buffer
+        assertArrayEquals(frame, (byte[]) otherBot.sent.get(0));
+        assertEquals(List.of(BOARD_JSON), browser.sent);
+
+        broadcaster.forget(bot.session);
+        assertFalse(broadcaster.usesBinary(bot.session));
+    }
+
+    @Test
+    public void sendPositive() {
+        Broadcaster broadcaster = new Broadcaster(8);
+        FakeSession player = new FakeSession();
+        register(broadcaster, player);
+
+        broadcaster.send(player.session, BOARD);
+        assertEquals(List.of(BOARD_JSON), player.sent);
+        assertEquals(1, broadcaster.pendingSends(player.session));
+    }
+
+    @Test
+    public void forgottenSessionNegative() {
+        Broadcaster broadcaster = new Broadcaster(8);
+        FakeSession gone = new FakeSession();
+        FakeSession unregistered = new FakeSession();
+        register(broadcaster, gone);
+        broadcaster.send(gone.session, BOARD);
+        broadcaster.forget(gone.session);
+
+        //a broadcast or callback that runs after the session closed must not bring it back
+        gone.completeAll();
+        broadcaster.sendAll(List.of(gone.session, unregistered.session), null, BOARD);
+        assertEquals(1, gone.sent.size());
+        assertEquals(List.of(), unregistered.sent);
+        assertEquals(0, broadcaster.pendingSends(gone.session));
+    }
+
+    private static void register(Broadcaster broadcaster, FakeSession... sessions) {
+        for (FakeSession session : sessions) {
+            broadcaster.register(session.session);
+        }
+    }
+}
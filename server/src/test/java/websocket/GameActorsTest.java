@@ -0,0 +1,94 @@
+package websocket;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameActorsTest {
+    private final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+    private final GameActors actors = new GameActors((gameID, failure) -> failures.add(failure));
+
+    @Test
+    public void submitOrderPositive() throws InterruptedException {
+        List<Integer> ran = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlapped = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            int task = i;
+            actors.submit(1, () -> {
+                if (running.incrementAndGet() > 1) {
+                    overlapped.incrementAndGet();
+                }
+                ran.add(task);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, overlapped.get());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, ran.get(i));
+        }
+    }
+
+    @Test
+    public void gamesParallelPositive() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherRan = new CountDownLatch(1);
+        actors.submit(1, release::await);
+        actors.submit(2, otherRan::countDown);
+
+        //game 2 runs while game 1 is still stuck
+        assertTrue(otherRan.await(10, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void failingTaskNegative() throws InterruptedException {
+        CountDownLatch next = new CountDownLatch(1);
+        actors.submit(1, () -> {
+            throw new IllegalStateException("boom");
+        });
+        //an Error must not take the drainer down with it either
+        actors.submit(1, () -> {
+            throw new AssertionError("worse");
+        });
+        actors.submit(1, next::countDown);
+        assertTrue(next.await(10, TimeUnit.SECONDS));
+        assertEquals(2, failures.size());
+        assertInstanceOf(IllegalStateException.class, failures.get(0));
+        assertInstanceOf(AssertionError.class, failures.get(1));
+    }
+
+    @Test
+    public void failingHandlerNegative() throws InterruptedException {
+        GameActors throwing = new GameActors((gameID, failure) -> {
+            throw new IllegalStateException("handler");
+        });
+        CountDownLatch next = new CountDownLatch(1);
+        throwing.submit(1, () -> {
+            throw new IllegalStateException("boom");
+        });
+        throwing.submit(1, next::countDown);
+        assertTrue(next.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void idleMailboxRemovedPositive() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        actors.submit(1, done::countDown);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 100 && actors.activeGames() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, actors.activeGames());
+    }
+}
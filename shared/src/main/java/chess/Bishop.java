@@ -2,7 +2,6 @@ package chess;
 
 import chess.ChessPiece.PieceType;
 import java.util.Collection;
-import java.util.HashSet;
 
 public class Bishop {
 
@@ -14,41 +13,14 @@ public class Bishop {
     }
 
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        Collection<ChessMove> moves = new HashSet();
-        this.shift(board, myPosition, moves, 1, 1);
-        this.shift(board, myPosition, moves, -1, 1);
-        this.shift(board, myPosition, moves, 1, -1);
-        this.shift(board, myPosition, moves, -1, -1);
-        return moves;
+        MoveList moves = new MoveList(16);
+        generate(board, Bitboards.square(myPosition), color, moves);
+        return moves.toChessMoves();
     }
 
-    private void shift(ChessBoard board, ChessPosition myPosition, Collection<ChessMove> moves, int cDirection, int rDirection) {
-        int c = myPosition.getColumn() + cDirection;
-        int r = myPosition.getRow() + rDirection;
-
-        // Continue moving in the direction until we hit the edge or a piece
-        while (c >= 1 && c <= 8 && r >= 1 && r <= 8) {
-            ChessPosition pos = new ChessPosition(r, c);
-            ChessPiece piece = board.getPiece(pos);
-
-            if (piece == null) {
-                // Empty square, add move and continue
-                moves.add(new ChessMove(myPosition, pos, null));
-            } else {
-                // There is a piece here
-                if (piece.getTeamColor() != this.color) {
-                    // Enemy piece, can capture, add move
-                    moves.add(new ChessMove(myPosition, pos, null));
-                }
-                // Stop moving further in this direction after hitting any piece
-                break;
-            }
-
-            // Move further in the same direction
-            c += cDirection;
-            r += rDirection;
-        }
+    static void generate(ChessBoard board, int from, ChessGame.TeamColor color, MoveList moves) {
+        long targets = Attacks.bishop(from, board.occupied()) & ~board.occupancy(color);
+        moves.addTargets(from, targets, board.occupied());
     }
 
 }
-
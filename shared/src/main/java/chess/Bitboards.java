@@ -0,0 +1,148 @@
+package chess;
+
+/**
+ * Square indexing and attack helpers for the 64-bit board representation.
+ * The attack functions here shift whole bitboards or walk rays; they are used
+ * to build the {@link Attacks} tables and for set-wise queries, while single
+ * square lookups should go through {@link Attacks}.
+ * <p>
+ * Squares are numbered 0..63 starting at a1 (row 1, column 1) and moving
+ * across each row, so bit {@code (row - 1) * 8 + (column - 1)} of a bitboard
+ * corresponds to that position.
+ */
+final class Bitboards {
+
+    static final long FILE_A = 0x0101010101010101L;
+    static final long FILE_B = FILE_A << 1;
+    static final long FILE_G = FILE_A << 6;
+    static final long FILE_H = FILE_A << 7;
+    static final long NOT_FILE_A = ~FILE_A;
+    static final long NOT_FILE_H = ~FILE_H;
+    static final long NOT_FILE_AB = ~(FILE_A | FILE_B);
+    static final long NOT_FILE_GH = ~(FILE_G | FILE_H);
+
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int a = 0; a < 64; a++) {
+            long rookRays = rookAttacks(a, 0L);
+            long bishopRays = bishopAttacks(a, 0L);
+            for (int b = 0; b < 64; b++) {
+                long endpoints = (1L << a) | (1L << b);
+                if ((rookRays & (1L << b)) != 0) {
+                    LINE[a][b] = (rookRays & rookAttacks(b, 0L)) | endpoints;
+                    BETWEEN[a][b] = rookAttacks(a, 1L << b) & rookAttacks(b, 1L << a);
+                } else if ((bishopRays & (1L << b)) != 0) {
+                    LINE[a][b] = (bishopRays & bishopAttacks(b, 0L)) | endpoints;
+                    BETWEEN[a][b] = bishopAttacks(a, 1L << b) & bishopAttacks(b, 1L << a);
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    /**
+     * @return the squares strictly between a and b if they share a rank, file or
+     * diagonal, otherwise 0
+     */
+    static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    /**
+     * @return the whole edge-to-edge line through a and b if they share a rank,
+     * file or diagonal, otherwise 0
+     */
+    static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    static int square(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    //positions come from callers, so one off the board must not alias to a square on it
+    static int square(ChessPosition position) {
+        int row = position.getRow();
+        int col = position.getColumn();
+        if (!onBoard(row, col)) {
+            throw new IllegalArgumentException("Position is off the board: " + position);
+        }
+        return square(row, col);
+    }
+
+    static int row(int square) {
+        return (square >>> 3) + 1;
+    }
+
+    static int column(int square) {
+        return (square & 7) + 1;
+    }
+
+    static boolean onBoard(int row, int col) {
+        return row > 0 && row < 9 && col > 0 && col < 9;
+    }
+
+    static long knightAttacks(long knights) {
+        return ((knights << 17) & NOT_FILE_A)
+                | ((knights << 15) & NOT_FILE_H)
+                | ((knights << 10) & NOT_FILE_AB)
+                | ((knights << 6) & NOT_FILE_GH)
+                | ((knights >>> 17) & NOT_FILE_H)
+                | ((knights >>> 15) & NOT_FILE_A)
+                | ((knights >>> 10) & NOT_FILE_GH)
+                | ((knights >>> 6) & NOT_FILE_AB);
+    }
+
+    static long kingAttacks(long kings) {
+        long sideways = ((kings << 1) & NOT_FILE_A) | ((kings >>> 1) & NOT_FILE_H);
+        long row = kings | sideways;
+        return sideways | (row << 8) | (row >>> 8);
+    }
+
+    /**
+     * @return the squares the given pawns capture on
+     */
+    static long pawnAttacks(long pawns, ChessGame.TeamColor color) {
+        if (color == ChessGame.TeamColor.WHITE) {
+            return ((pawns << 9) & NOT_FILE_A) | ((pawns << 7) & NOT_FILE_H);
+        }
+        return ((pawns >>> 7) & NOT_FILE_A) | ((pawns >>> 9) & NOT_FILE_H);
+    }
+
+    static long rookAttacks(int square, long occupied) {
+        long from = 1L << square;
+        long empty = ~occupied;
+        return slide(from, empty, 8, -1L)
+                | slide(from, empty, -8, -1L)
+                | slide(from, empty, 1, NOT_FILE_A)
+                | slide(from, empty, -1, NOT_FILE_H);
+    }
+
+    static long bishopAttacks(int square, long occupied) {
+        long from = 1L << square;
+        long empty = ~occupied;
+        return slide(from, empty, 9, NOT_FILE_A)
+                | slide(from, empty, 7, NOT_FILE_H)
+                | slide(from, empty, -7, NOT_FILE_A)
+                | slide(from, empty, -9, NOT_FILE_H);
+    }
+
+    /**
+     * Walks one ray until it leaves the board or hits an occupied square,
+     * including that blocking square in the result.
+     */
+    private static long slide(long from, long empty, int shift, long wrapMask) {
+        long attacks = 0L;
+        long ray = from;
+        while (ray != 0) {
+            ray = (shift > 0 ? ray << shift : ray >>> -shift) & wrapMask;
+            attacks |= ray;
+            ray &= empty;
+        }
+        return attacks;
+    }
+}
@@ -1,5 +1,7 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.Arrays;
 
 /**
@@ -7,13 +9,58 @@ import java.util.Arrays;
  * <p>
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
+ * <p>
+ * Internally the board is twelve bitboards, one per color and piece type,
+ * with a 64-entry mailbox alongside them so getPiece stays a single lookup.
  */
+@JsonAdapter(ChessBoardAdapter.class)
 public class ChessBoard {
 
-    private ChessPiece[][] squares = new ChessPiece[8][8];
+    static final int NO_PIECE = -1;
+    static final int NO_SQUARE = -1;
+    private static final int KING = ChessPiece.PieceType.KING.ordinal();
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+    private static final ChessPiece[] PIECES = new ChessPiece[12];
+
+    static {
+        for (int i = 0; i < PIECES.length; i++) {
+            PIECES[i] = new ChessPiece(colorOf(i), TYPES[i % 6]);
+        }
+    }
+
+    private final long[] pieces = new long[12];
+    private final long[] occupancy = new long[2];
+    private final byte[] mailbox = new byte[64];
+    //lowest king square per color, or NO_SQUARE; kept current by put and clear
+    private final int[] kingSquares = {NO_SQUARE, NO_SQUARE};
+    //Zobrist key of the pieces on the board, kept current by put and clear
+    private long zobristKey = 0L;
+
+    /*
+     * Undo records for makeMove/unmakeMove, one packed int per ply:
+     * from (6 bits) | to (6 bits) | moved piece (4 bits) | captured piece + 1 (4 bits).
+     * Storing the moved piece rather than the promotion lets unmake restore a pawn.
+     */
+    private int[] undoStack = new int[64];
+    private int undoCount = 0;
 
     public ChessBoard() {
+        Arrays.fill(mailbox, (byte) NO_PIECE);
+    }
 
+    /**
+     * Creates an independent copy of another board's pieces. Move history for
+     * unmakeMove is not copied.
+     *
+     * @param other the board to copy
+     */
+    public ChessBoard(ChessBoard other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.occupancy, 0, occupancy, 0, occupancy.length);
+        System.arraycopy(other.mailbox, 0, mailbox, 0, mailbox.length);
+        System.arraycopy(other.kingSquares, 0, kingSquares, 0, kingSquares.length);
+        zobristKey = other.zobristKey;
     }
 
     /**
@@ -21,10 +68,15 @@ public class ChessBoard {
      *
      * @param position where to add the piece to
      * @param piece    the piece to add
+     * @throws IllegalArgumentException if position is off the board
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
         //throw new RuntimeException("Not implemented");
-        squares[position.getRow() - 1][position.getColumn() - 1] = piece;
+        int square = Bitboards.square(position);
+        clear(square);
+        if (piece != null) {
+            put(square, pieceIndex(piece.getTeamColor(), piece.getPieceType()));
+        }
     }
 
     /**
@@ -33,10 +85,12 @@ public class ChessBoard {
      * @param position The position to get the piece from
      * @return Either the piece at the position, or null if no piece is at that
      * position
+     * @throws IllegalArgumentException if position is off the board
      */
     public ChessPiece getPiece(ChessPosition position) {
         //throw new RuntimeException("Not implemented");
-        return squares[position.getRow() - 1][position.getColumn() - 1];
+        int piece = mailbox[Bitboards.square(position)];
+        return piece == NO_PIECE ? null : PIECES[piece];
     }
 
     /**
@@ -50,12 +104,225 @@ public class ChessBoard {
     }
 
     private void clearBoard() {
-        for (int i = 0; i < 8; ++i) {
-            for (int j = 0; j < 8; ++j) {
-                this.squares[i][j] = null;
-            }
+        Arrays.fill(pieces, 0L);
+        Arrays.fill(occupancy, 0L);
+        Arrays.fill(mailbox, (byte) NO_PIECE);
+        Arrays.fill(kingSquares, NO_SQUARE);
+        zobristKey = 0L;
+        undoCount = 0;
+    }
+
+    /**
+     * @param color the team whose king to find
+     * @return where that team's king is, or null if it has none. If a board has
+     * several kings of one color, the one nearest a1 is returned.
+     */
+    public ChessPosition getKingPosition(ChessGame.TeamColor color) {
+        int square = kingSquares[color.ordinal()];
+        return square == NO_SQUARE ? null : ChessPosition.of(square);
+    }
+
+    /**
+     * Determines if any piece of the given team attacks a square
+     *
+     * @param position the square to test
+     * @param byColor  the attacking team
+     * @return True if a piece of byColor could capture on that square
+     */
+    public boolean isSquareAttacked(ChessPosition position, ChessGame.TeamColor byColor) {
+        return isSquareAttacked(Bitboards.square(position), byColor);
+    }
+
+    /**
+     * Same as {@link #isSquareAttacked(ChessPosition, ChessGame.TeamColor)} for a
+     * square index. Looks outward from the square with each piece's attack
+     * pattern, trying the cheap leaper lookups before the sliders.
+     */
+    public boolean isSquareAttacked(int square, ChessGame.TeamColor byColor) {
+        int base = byColor.ordinal() * 6;
+        ChessGame.TeamColor defender = byColor == ChessGame.TeamColor.WHITE
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        if ((Attacks.pawn(defender, square) & pieces[base + ChessPiece.PieceType.PAWN.ordinal()]) != 0
+                || (Attacks.knight(square) & pieces[base + ChessPiece.PieceType.KNIGHT.ordinal()]) != 0
+                || (Attacks.king(square) & pieces[base + ChessPiece.PieceType.KING.ordinal()]) != 0) {
+            return true;
         }
+        long occupied = occupied();
+        long queens = pieces[base + ChessPiece.PieceType.QUEEN.ordinal()];
+        long rooks = pieces[base + ChessPiece.PieceType.ROOK.ordinal()] | queens;
+        if (rooks != 0 && (Attacks.rook(square, occupied) & rooks) != 0) {
+            return true;
+        }
+        long bishops = pieces[base + ChessPiece.PieceType.BISHOP.ordinal()] | queens;
+        return bishops != 0 && (Attacks.bishop(square, occupied) & bishops) != 0;
+    }
 
+    /**
+     * Plays a move on this board in place and records what is needed to take it back.
+     * The move is not checked for legality.
+     *
+     * @param move the move to play; the start square must hold a piece
+     */
+    public void makeMove(ChessMove move) {
+        makeMove(PackedMove.of(move));
+    }
+
+    /**
+     * Restores the board to how it was before the most recent makeMove.
+     *
+     * @throws IllegalStateException if there is no move to take back
+     */
+    public void unmakeMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("No move to unmake");
+        }
+        int undo = undoStack[--undoCount];
+        int from = undo & 0x3F;
+        int to = (undo >>> 6) & 0x3F;
+        int moved = (undo >>> 12) & 0xF;
+        int captured = ((undo >>> 16) & 0xF) - 1;
+
+        clear(to);
+        put(from, moved);
+        if (captured != NO_PIECE) {
+            put(to, captured);
+        }
+    }
+
+    /**
+     * Same as {@link #makeMove(ChessMove)} for a {@link PackedMove}.
+     */
+    public void makeMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int moved = mailbox[from];
+        int captured = mailbox[to];
+        if (undoCount == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoCount * 2);
+        }
+        undoStack[undoCount++] = from | (to << 6) | (moved << 12) | ((captured + 1) << 16);
+        apply(from, to, PackedMove.promotion(move));
+    }
+
+    /**
+     * Plays a move for good, keeping nothing to take it back, so a game that
+     * lasts for thousands of moves doesn't hold an undo record for each. Moves
+     * made before it can no longer be taken back either.
+     */
+    void commitMove(ChessMove move) {
+        int packed = PackedMove.of(move);
+        undoCount = 0;
+        apply(PackedMove.from(packed), PackedMove.to(packed), PackedMove.promotion(packed));
+    }
+
+    private void apply(int from, int to, ChessPiece.PieceType promotion) {
+        int moved = mailbox[from];
+        int placed = moved;
+        if (promotion != null && typeOf(moved) == ChessPiece.PieceType.PAWN) {
+            placed = pieceIndex(colorOf(moved), promotion);
+        }
+        clear(from);
+        clear(to);
+        put(to, placed);
+    }
+
+    static int pieceIndex(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * 6 + type.ordinal();
+    }
+
+    static ChessGame.TeamColor colorOf(int piece) {
+        return piece < 6 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+    }
+
+    static ChessPiece.PieceType typeOf(int piece) {
+        return TYPES[piece % 6];
+    }
+
+    static ChessPiece pieceFor(int piece) {
+        return PIECES[piece];
+    }
+
+    /**
+     * @return the piece index on the square, or {@link #NO_PIECE}
+     */
+    int pieceAt(int square) {
+        return mailbox[square];
+    }
+
+    /**
+     * @return the king square for the color, or {@link #NO_SQUARE}
+     */
+    int kingSquare(ChessGame.TeamColor color) {
+        return kingSquares[color.ordinal()];
+    }
+
+    /**
+     * @return the Zobrist key of the piece placement, without side to move
+     */
+    long zobristKey() {
+        return zobristKey;
+    }
+
+    long pieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return pieces[pieceIndex(color, type)];
+    }
+
+    long occupancy(ChessGame.TeamColor color) {
+        return occupancy[color.ordinal()];
+    }
+
+    long occupied() {
+        return occupancy[0] | occupancy[1];
+    }
+
+    /**
+     * @return every piece of the attacking color that attacks the square, treating
+     * only the squares in occupied as blockers
+     */
+    long attackersTo(int square, ChessGame.TeamColor attacker, long occupied) {
+        int base = attacker.ordinal() * 6;
+        long queens = pieces[base + ChessPiece.PieceType.QUEEN.ordinal()];
+        ChessGame.TeamColor defender = attacker == ChessGame.TeamColor.WHITE
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+
+        return (Attacks.pawn(defender, square) & pieces[base + ChessPiece.PieceType.PAWN.ordinal()])
+                | (Attacks.knight(square) & pieces[base + ChessPiece.PieceType.KNIGHT.ordinal()])
+                | (Attacks.king(square) & pieces[base + ChessPiece.PieceType.KING.ordinal()])
+                | (Attacks.rook(square, occupied)
+                        & (pieces[base + ChessPiece.PieceType.ROOK.ordinal()] | queens))
+                | (Attacks.bishop(square, occupied)
+                        & (pieces[base + ChessPiece.PieceType.BISHOP.ordinal()] | queens));
+    }
+
+    void put(int square, int piece) {
+        long bit = 1L << square;
+        pieces[piece] |= bit;
+        occupancy[piece / 6] |= bit;
+        mailbox[square] = (byte) piece;
+        zobristKey ^= Zobrist.pieceSquare(piece, square);
+        if (piece % 6 == KING) {
+            updateKingSquare(piece / 6);
+        }
+    }
+
+    void clear(int square) {
+        int piece = mailbox[square];
+        if (piece == NO_PIECE) {
+            return;
+        }
+        long bit = 1L << square;
+        pieces[piece] &= ~bit;
+        occupancy[piece / 6] &= ~bit;
+        mailbox[square] = (byte) NO_PIECE;
+        zobristKey ^= Zobrist.pieceSquare(piece, square);
+        if (piece % 6 == KING) {
+            updateKingSquare(piece / 6);
+        }
+    }
+
+    private void updateKingSquare(int color) {
+        long kings = pieces[color * 6 + KING];
+        kingSquares[color] = kings == 0 ? NO_SQUARE : Long.numberOfTrailingZeros(kings);
     }
 
     @Override
@@ -67,50 +334,56 @@ public class ChessBoard {
             return false;
         }
         ChessBoard that = (ChessBoard) o;
-        return Arrays.deepEquals(squares, that.squares);
+        return Arrays.equals(pieces, that.pieces);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(squares);
+        return Long.hashCode(zobristKey);
     }
 
     private void setSquares() {
-        //White rank
-        squares[0][0] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK);
-        squares[0][1] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT);
-        squares[0][2] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP);
-        squares[0][3] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN);
-        squares[0][4] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING);
-        squares[0][5] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP);
-        squares[0][6] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT);
-        squares[0][7] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK);
-
-        //white pawns
-        for (int col = 0; col < 8; col++) {
-            squares[1][col] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN);
-        }
+        ChessPiece.PieceType[] backRank = {
+                ChessPiece.PieceType.ROOK, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP,
+                ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.KING, ChessPiece.PieceType.BISHOP,
+                ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.ROOK
+        };
+        for (int col = 1; col <= 8; col++) {
+            //White rank and pawns
+            put(Bitboards.square(1, col), pieceIndex(ChessGame.TeamColor.WHITE, backRank[col - 1]));
+            put(Bitboards.square(2, col), pieceIndex(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
 
-        //Black rank
-        squares[7][0] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK);
-        squares[7][1] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT);
-        squares[7][2] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP);
-        squares[7][3] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN);
-        squares[7][4] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING);
-        squares[7][5] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP);
-        squares[7][6] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT);
-        squares[7][7] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK);
-
-        //black pawns
-        for (int col = 0; col < 8; col++) {
-            squares[6][col] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN);
+            //Black rank and pawns
+            put(Bitboards.square(8, col), pieceIndex(ChessGame.TeamColor.BLACK, backRank[col - 1]));
+            put(Bitboards.square(7, col), pieceIndex(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
         }
     }
 
     @Override
     public String toString() {
-        return "ChessBoard{" +
-                "squares=" + Arrays.toString(squares) +
-                '}';
+        StringBuilder sb = new StringBuilder("ChessBoard{squares=");
+        for (int row = 8; row >= 1; row--) {
+            sb.append('|');
+            for (int col = 1; col <= 8; col++) {
+                int piece = mailbox[Bitboards.square(row, col)];
+                sb.append(piece == NO_PIECE ? ' ' : pieceChar(piece)).append('|');
+            }
+            if (row > 1) {
+                sb.append(' ');
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private static char pieceChar(int piece) {
+        char c = switch (typeOf(piece)) {
+            case KING -> 'k';
+            case QUEEN -> 'q';
+            case BISHOP -> 'b';
+            case KNIGHT -> 'n';
+            case ROOK -> 'r';
+            case PAWN -> 'p';
+        };
+        return colorOf(piece) == ChessGame.TeamColor.WHITE ? Character.toUpperCase(c) : c;
     }
-}
\ No newline at end of file
+}
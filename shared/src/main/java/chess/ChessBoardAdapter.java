@@ -0,0 +1,92 @@
+package chess;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Keeps the JSON form of a ChessBoard as the original 8x8 {@code squares}
+ * array of pieces, so stored games and websocket clients are unaffected by
+ * the bitboard representation.
+ */
+class ChessBoardAdapter extends TypeAdapter<ChessBoard> {
+
+    @Override
+    public void write(JsonWriter out, ChessBoard board) throws IOException {
+        if (board == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("squares");
+        out.beginArray();
+        for (int row = 1; row <= 8; row++) {
+            out.beginArray();
+            for (int col = 1; col <= 8; col++) {
+                int piece = board.pieceAt(Bitboards.square(row, col));
+                if (piece == ChessBoard.NO_PIECE) {
+                    out.nullValue();
+                } else {
+                    out.beginObject();
+                    out.name("color").value(ChessBoard.colorOf(piece).name());
+                    out.name("pieceType").value(ChessBoard.typeOf(piece).name());
+                    out.endObject();
+                }
+            }
+            out.endArray();
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    @Override
+    public ChessBoard read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ChessBoard board = new ChessBoard();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!"squares".equals(in.nextName())) {
+                in.skipValue();
+                continue;
+            }
+            in.beginArray();
+            for (int row = 1; in.hasNext(); row++) {
+                in.beginArray();
+                for (int col = 1; in.hasNext(); col++) {
+                    readSquare(in, board, row, col);
+                }
+                in.endArray();
+            }
+            in.endArray();
+        }
+        in.endObject();
+        return board;
+    }
+
+    private void readSquare(JsonReader in, ChessBoard board, int row, int col) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return;
+        }
+        ChessGame.TeamColor color = null;
+        ChessPiece.PieceType type = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "color" -> color = ChessGame.TeamColor.valueOf(in.nextString());
+                case "pieceType" -> type = ChessPiece.PieceType.valueOf(in.nextString());
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (color != null && type != null && Bitboards.onBoard(row, col)) {
+            board.put(Bitboards.square(row, col), ChessBoard.pieceIndex(color, type));
+        }
+    }
+}
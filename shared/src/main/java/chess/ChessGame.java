@@ -1,6 +1,5 @@
 package chess;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Objects;
 
@@ -17,12 +16,41 @@ public class ChessGame {
 
     private boolean gameOver = false;
 
+    //FEN letter for each ChessBoard piece index, white then black
+    private static final String FEN_PIECES = "KQBNRPkqbnrp";
+
+    //reused by legality checks so they don't allocate; one per thread so read-only queries stay thread-safe
+    private static final ThreadLocal<MoveList> SCRATCH_MOVES = ThreadLocal.withInitial(MoveList::new);
+
     public ChessGame() {
         board = new ChessBoard();
         board.resetBoard();
         currentTurn = TeamColor.WHITE;
     }
 
+    /**
+     * Creates an independent copy of another game: its pieces, whose turn it is
+     * and whether it is over. Move history for ChessBoard.unmakeMove is not copied.
+     *
+     * @param other the game to copy
+     */
+    public ChessGame(ChessGame other) {
+        this(new ChessBoard(other.board), other.currentTurn);
+        gameOver = other.gameOver;
+    }
+
+    /**
+     * Creates a game in a given position. The game uses the board itself rather
+     * than a copy, so the caller should not change it afterwards.
+     *
+     * @param board       the pieces
+     * @param currentTurn the team to move
+     */
+    public ChessGame(ChessBoard board, TeamColor currentTurn) {
+        this.board = board;
+        this.currentTurn = currentTurn;
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -63,17 +91,9 @@ public class ChessGame {
             return null;
         }
 
-        Collection<ChessMove> allMoves = piece.pieceMoves(board, startPosition);
-        Collection<ChessMove> validMoves = new ArrayList<>();
-
-        for (ChessMove move : allMoves) {
-            ChessBoard tempBoard = copyBoard(board);
-            makeMoveOnBoard(tempBoard, move);
-            if (!isKingInCheck(tempBoard, piece.getTeamColor())) {
-                validMoves.add(move);
-            }
-        }
-        return validMoves;
+        MoveList moves = new MoveList(32);
+        LegalMoveGenerator.generate(board, Bitboards.square(startPosition), moves);
+        return moves.toChessMoves();
     }
 
     /**
@@ -86,15 +106,17 @@ public class ChessGame {
         if (isGameOver()) {
             throw new InvalidMoveException("Game is over. No more moves allowed.");
         }
+        if (!onBoard(move.getStartPosition()) || !onBoard(move.getEndPosition())) {
+            throw new InvalidMoveException("Move is off the board");
+        }
         ChessPiece piece = board.getPiece(move.getStartPosition());
         if (piece == null || piece.getTeamColor() != currentTurn) {
             throw new InvalidMoveException("No piece at start or not your turn");
         }
-        Collection<ChessMove> valid = validMoves(move.getStartPosition());
-        if (!valid.contains(move)) {
+        if (!isLegal(piece, PackedMove.of(move))) {
             throw new InvalidMoveException("Invalid move");
         }
-        makeMoveOnBoard(board, move);
+        board.commitMove(move);
         //switch turn
         currentTurn = (currentTurn == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
     }
@@ -168,88 +190,140 @@ public class ChessGame {
         return board;
     }
 
-    private ChessBoard copyBoard(ChessBoard originalBoard) {
-        ChessBoard newBoard = new ChessBoard();
-        for (int row = 1; row <= 8; row++) {
-            for (int col = 1; col <= 8; col++) {
-                ChessPosition pos = new ChessPosition(row, col);
-                ChessPiece piece = originalBoard.getPiece(pos);
-                if (piece != null) {
-                    newBoard.addPiece(pos, new ChessPiece(piece.getTeamColor(), piece.getPieceType()));
-                }
-            }
+    private boolean isKingInCheck(ChessBoard board, TeamColor team) {
+        int kingSquare = board.kingSquare(team);
+        if (kingSquare == ChessBoard.NO_SQUARE) {
+            return true;
         }
-        return newBoard;
+        TeamColor enemy = (team == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
+        return board.isSquareAttacked(kingSquare, enemy);
     }
 
-    private void makeMoveOnBoard(ChessBoard board, ChessMove move) {
-        ChessPiece piece = board.getPiece(move.getStartPosition());
-        board.addPiece(move.getEndPosition(), piece);
-        board.addPiece(move.getStartPosition(), null);
-
-        //promo
-        if (piece.getPieceType() == ChessPiece.PieceType.PAWN && move.getPromotionPiece() != null) {
-            board.addPiece(move.getEndPosition(), new ChessPiece(piece.getTeamColor(), move.getPromotionPiece()));
-        }
+    private static boolean onBoard(ChessPosition position) {
+        return Bitboards.onBoard(position.getRow(), position.getColumn());
     }
 
-    private ChessPosition findKing(ChessBoard board, TeamColor team) {
-        for (int row = 1; row <= 8; row++) {
-            for (int col = 1; col <= 8; col++) {
-                ChessPosition pos = new ChessPosition(row, col);
-                ChessPiece piece = board.getPiece(pos);
-                if (piece != null && piece.getTeamColor() == team && piece.getPieceType() == ChessPiece.PieceType.KING) {
-                    return pos;
-                }
+    private boolean isLegal(ChessPiece piece, int move) {
+        MoveList moves = SCRATCH_MOVES.get();
+        moves.clear();
+        LegalMoveGenerator.generate(board, PackedMove.from(move), moves);
+        for (int i = 0; i < moves.size(); i++) {
+            if (PackedMove.withoutFlags(moves.get(i)) == move) {
+                return true;
             }
         }
-        return null;
+        return false;
     }
 
-    private boolean isKingInCheck(ChessBoard board, TeamColor team) {
-        ChessPosition kingPos = findKing(board, team);
-        if (kingPos == null) {
-            return true;
-        }
+    public boolean hasAnyValidMoves(ChessBoard board, ChessGame.TeamColor teamColor) {
+        return LegalMoveGenerator.hasLegalMove(board, teamColor, SCRATCH_MOVES.get());
+    }
+
+    /**
+     * Gets a 64-bit Zobrist key for the current position: the pieces on the
+     * board and whose turn it is. Equal positions always have equal keys, and
+     * the key is kept up to date as moves are made rather than recomputed.
+     *
+     * @return the position key
+     */
+    public long positionKey() {
+        long key = board.zobristKey();
+        return currentTurn == TeamColor.BLACK ? key ^ Zobrist.BLACK_TO_MOVE : key;
+    }
 
-        for (int row = 1; row <= 8; row++) {
+    /**
+     * Writes the position as Forsyth-Edwards Notation. This game does not track
+     * castling rights, en passant or the move counters, so those fields are always
+     * written as "- - 0 1" whatever moves have been played.
+     *
+     * @return the FEN string, e.g. the start position is
+     * "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1"
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder(72);
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
             for (int col = 1; col <= 8; col++) {
-                ChessPosition pos = new ChessPosition(row, col);
-                ChessPiece piece = board.getPiece(pos);
-                if (piece == null || piece.getTeamColor() == team) {
+                int piece = board.pieceAt(Bitboards.square(row, col));
+                if (piece == ChessBoard.NO_PIECE) {
+                    empty++;
                     continue;
                 }
-                if (canPieceAttackPosition(piece, board, pos, kingPos)) {
-                    return true;
+                if (empty > 0) {
+                    fen.append((char) ('0' + empty));
+                    empty = 0;
                 }
+                fen.append(FEN_PIECES.charAt(piece));
             }
-        }
-        return false;
-    }
-
-    private boolean canPieceAttackPosition(ChessPiece piece, ChessBoard board, ChessPosition from, ChessPosition target) {
-        for (ChessMove move : piece.pieceMoves(board, from)) {
-            if (move.getEndPosition().equals(target)) {
-                return true;
+            if (empty > 0) {
+                fen.append((char) ('0' + empty));
+            }
+            if (row > 1) {
+                fen.append('/');
             }
         }
-        return false;
+        fen.append(currentTurn == TeamColor.WHITE ? " w" : " b").append(" - - 0 1");
+        return fen.toString();
     }
 
-    public boolean hasAnyValidMoves(ChessBoard board, ChessGame.TeamColor teamColor) {
-        for (int row = 1; row <= 8; row++) {
-            for (int col = 1; col <= 8; col++) {
-                ChessPosition pos = new ChessPosition(row, col);
-                ChessPiece piece = board.getPiece(pos);
-                if (piece != null && piece.getTeamColor() == teamColor) {
-                    Collection<ChessMove> moves = validMoves(pos);
-                    if (moves != null && !moves.isEmpty()) {
-                        return true;
+    /**
+     * Reads a position from Forsyth-Edwards Notation. Only the piece placement and
+     * side to move are used; the side must be exactly "w" or "b" and defaults to
+     * white if missing, and castling, en passant and move counter fields are
+     * accepted but ignored.
+     *
+     * @param fen the FEN string
+     * @return a new game in that position
+     * @throws IllegalArgumentException if the placement or side to move is malformed
+     */
+    public static ChessGame fromFen(String fen) {
+        ChessBoard board = new ChessBoard();
+        int length = fen.length();
+        int i = 0;
+        while (i < length && fen.charAt(i) == ' ') {
+            i++;
+        }
+        int row = 8;
+        int col = 1;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            switch (c) {
+                case '/' -> {
+                    if (col != 9 || row == 1) {
+                        throw new IllegalArgumentException("Bad rank in FEN: " + fen);
                     }
+                    row--;
+                    col = 1;
+                }
+                case '1', '2', '3', '4', '5', '6', '7', '8' -> col += c - '0';
+                default -> {
+                    int piece = FEN_PIECES.indexOf(c);
+                    if (piece < 0 || col > 8) {
+                        throw new IllegalArgumentException("Bad piece '" + c + "' in FEN: " + fen);
+                    }
+                    board.addPiece(ChessPosition.of(row, col), ChessBoard.pieceFor(piece));
+                    col++;
                 }
             }
+            if (col > 9) {
+                throw new IllegalArgumentException("Bad rank in FEN: " + fen);
+            }
         }
-        return false;
+        if (row != 1 || col != 9) {
+            throw new IllegalArgumentException("Incomplete piece placement in FEN: " + fen);
+        }
+
+        while (i < length && fen.charAt(i) == ' ') {
+            i++;
+        }
+        int sideEnd = fen.indexOf(' ', i);
+        String side = fen.substring(i, sideEnd < 0 ? length : sideEnd);
+        TeamColor turn = switch (side) {
+            case "", "w" -> TeamColor.WHITE;
+            case "b" -> TeamColor.BLACK;
+            default -> throw new IllegalArgumentException("Bad side to move '" + side + "' in FEN: " + fen);
+        };
+        return new ChessGame(board, turn);
     }
 
     public boolean isGameOver() {
@@ -282,6 +356,6 @@ public class ChessGame {
 
     @Override
     public int hashCode() {
-        return Objects.hash(board, currentTurn);
+        return Long.hashCode(positionKey());
     }
 }
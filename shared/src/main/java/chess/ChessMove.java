@@ -1,5 +1,7 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.Objects;
 
 /**
@@ -8,8 +10,12 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessMoveAdapter.class)
 public class ChessMove {
 
+    //indexed by PackedMove without flags; filled on first use, races only create duplicates
+    private static final ChessMove[] CACHE = new ChessMove[1 << 15];
+
     private final ChessPosition start;
     private final ChessPosition end;
     private final ChessPiece.PieceType type;
@@ -21,6 +27,32 @@ public class ChessMove {
         type = promotionPiece;
     }
 
+    /**
+     * Gets the shared instance for a move. Moves with a start or end off the
+     * board are not cached and get a new instance.
+     *
+     * @return the move
+     */
+    public static ChessMove of(ChessPosition startPosition, ChessPosition endPosition,
+                               ChessPiece.PieceType promotionPiece) {
+        if (!Bitboards.onBoard(startPosition.getRow(), startPosition.getColumn())
+                || !Bitboards.onBoard(endPosition.getRow(), endPosition.getColumn())) {
+            return new ChessMove(startPosition, endPosition, promotionPiece);
+        }
+        return of(PackedMove.of(Bitboards.square(startPosition), Bitboards.square(endPosition), promotionPiece));
+    }
+
+    static ChessMove of(int packedMove) {
+        int index = PackedMove.withoutFlags(packedMove);
+        ChessMove move = CACHE[index];
+        if (move == null) {
+            move = new ChessMove(ChessPosition.of(PackedMove.from(index)), ChessPosition.of(PackedMove.to(index)),
+                    PackedMove.promotion(index));
+            CACHE[index] = move;
+        }
+        return move;
+    }
+
     /**
      * @return ChessPosition of starting location
      */
@@ -0,0 +1,74 @@
+package chess;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes ChessMove in its usual {@code {"start":..,"end":..,"type":..}}
+ * form, handing back the shared instance from {@link ChessMove#of} when reading.
+ */
+class ChessMoveAdapter extends TypeAdapter<ChessMove> {
+
+    private final ChessPositionAdapter positions = new ChessPositionAdapter();
+
+    @Override
+    public void write(JsonWriter out, ChessMove move) throws IOException {
+        if (move == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("start");
+        positions.write(out, move.getStartPosition());
+        out.name("end");
+        positions.write(out, move.getEndPosition());
+        if (move.getPromotionPiece() != null) {
+            out.name("type").value(move.getPromotionPiece().name());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public ChessMove read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ChessPosition start = null;
+        ChessPosition end = null;
+        ChessPiece.PieceType type = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "start" -> start = positions.read(in);
+                case "end" -> end = positions.read(in);
+                case "type" -> {
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        type = pieceType(in.nextString());
+                    }
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (start == null || end == null) {
+            return new ChessMove(start, end, type);
+        }
+        return ChessMove.of(start, end, type);
+    }
+
+    private static ChessPiece.PieceType pieceType(String name) {
+        try {
+            return ChessPiece.PieceType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException("Unknown promotion piece " + name);
+        }
+    }
+}
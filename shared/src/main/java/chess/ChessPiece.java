@@ -1,6 +1,5 @@
 package chess;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Objects;
 
@@ -75,37 +74,24 @@ public class ChessPiece {
      */
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
         //throw new RuntimeException("Not implemented");
-        if (pieceType == PieceType.KING) {
-            King king = new King(color);
-            Collection<ChessMove> kingMoves = king.pieceMoves(board, myPosition);
-            return kingMoves;
-        }
-        if (pieceType == PieceType.ROOK) {
-            Rook rook = new Rook(color);
-            Collection<ChessMove> rookMoves = rook.pieceMoves(board, myPosition);
-            return rookMoves;
-        }
-        if (pieceType == PieceType.QUEEN) {
-            Queen queen = new Queen(color);
-            Collection<ChessMove> queenMoves = queen.pieceMoves(board, myPosition);
-            return queenMoves;
-        }
-        if (pieceType == PieceType.KNIGHT) {
-            Knight knight = new Knight(color);
-            Collection<ChessMove> knightMoves = knight.pieceMoves(board, myPosition);
-            return knightMoves;
-        }
-        if (pieceType == PieceType.BISHOP) {
-            Bishop bishop = new Bishop(color);
-            Collection<ChessMove> bishopMoves = bishop.pieceMoves(board, myPosition);
-            return bishopMoves;
-        }
-        if (pieceType == PieceType.PAWN) {
-            Pawn pawn = new Pawn(color);
-            Collection<ChessMove> pawnMoves = pawn.pieceMoves(board, myPosition);
-            return pawnMoves;
+        MoveList moves = new MoveList(32);
+        pieceMoves(board, Bitboards.square(myPosition), moves);
+        return moves.toChessMoves();
+    }
+
+    /**
+     * Appends this piece's moves from the given square to a caller-supplied
+     * buffer as {@link PackedMove} ints, without allocating.
+     */
+    public void pieceMoves(ChessBoard board, int square, MoveList moves) {
+        switch (pieceType) {
+            case KING -> King.generate(board, square, color, moves);
+            case QUEEN -> Queen.generate(board, square, color, moves);
+            case BISHOP -> Bishop.generate(board, square, color, moves);
+            case KNIGHT -> Knight.generate(board, square, color, moves);
+            case ROOK -> Rook.generate(board, square, color, moves);
+            case PAWN -> Pawn.generate(board, square, color, moves);
         }
-        return new ArrayList<>();
     }
 
     @Override
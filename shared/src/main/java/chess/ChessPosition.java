@@ -1,6 +1,6 @@
 package chess;
 
-import java.util.Objects;
+import com.google.gson.annotations.JsonAdapter;
 
 /**
  * Represents a single square position on a chess board
@@ -8,8 +8,17 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessPositionAdapter.class)
 public class ChessPosition {
 
+    private static final ChessPosition[] CACHE = new ChessPosition[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            CACHE[square] = new ChessPosition(Bitboards.row(square), Bitboards.column(square));
+        }
+    }
+
     private final int row;
     private final int col;
 
@@ -19,6 +28,25 @@ public class ChessPosition {
         this.col = col;
     }
 
+    /**
+     * Gets the shared instance for a square. Positions off the board are not
+     * cached and get a new instance.
+     *
+     * @param row 1 codes for the bottom row
+     * @param col 1 codes for the left column
+     * @return the position
+     */
+    public static ChessPosition of(int row, int col) {
+        if (!Bitboards.onBoard(row, col)) {
+            return new ChessPosition(row, col);
+        }
+        return CACHE[Bitboards.square(row, col)];
+    }
+
+    static ChessPosition of(int square) {
+        return CACHE[square];
+    }
+
     /**
      * @return which row this position is in
      * 1 codes for the bottom row
@@ -59,6 +87,7 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        //same value as Objects.hash(row, col) without the varargs array
+        return 31 * (31 + row) + col;
     }
 }
@@ -1,25 +1,18 @@
 package chess;
 
-import java.util.Collection;
-
 public class KingKnightShift {
+    /**
+     * Adds a move to each reachable square that is empty or holds an enemy piece.
+     *
+     * @param reachable the squares the king or knight can jump to from its start square
+     */
     public static void shift(
             ChessBoard board,
-            ChessPosition myPosition,
-            Collection<ChessMove> moves,
-            int cDirection,
-            int rDirection,
-            ChessGame.TeamColor color
+            int from,
+            long reachable,
+            ChessGame.TeamColor color,
+            MoveList moves
     ) {
-        int c = myPosition.getColumn() + cDirection;
-        int r = myPosition.getRow() + rDirection;
-        if (c > 0 && c < 9 && r > 0 && r < 9) {
-            ChessPosition pos = new ChessPosition(r, c);
-            ChessPiece target = board.getPiece(pos);
-
-            if (target == null || target.getTeamColor() != color) {
-                moves.add(new ChessMove(myPosition, pos, null));
-            }
-        }
+        moves.addTargets(from, reachable & ~board.occupancy(color), board.occupied());
     }
 }
@@ -2,7 +2,6 @@ package chess;
 
 import chess.ChessPiece.PieceType;
 import java.util.Collection;
-import java.util.HashSet;
 
 public class Knight {
 
@@ -14,16 +13,12 @@ public class Knight {
     }
 
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        Collection<ChessMove> moves = new HashSet();
-        KingKnightShift.shift(board, myPosition, moves, -1, 2, this.color);
-        KingKnightShift.shift(board, myPosition, moves, -2, 1, this.color);
-        KingKnightShift.shift(board, myPosition, moves, -2, -1, this.color);
-        KingKnightShift.shift(board, myPosition, moves, -1, -2, this.color);
-        KingKnightShift.shift(board, myPosition, moves, 1, -2, this.color);
-        KingKnightShift.shift(board, myPosition, moves, 2, -1, this.color);
-        KingKnightShift.shift(board, myPosition, moves, 2, 1, this.color);
-        KingKnightShift.shift(board, myPosition, moves, 1, 2, this.color);
-        return moves;
+        MoveList moves = new MoveList(8);
+        generate(board, Bitboards.square(myPosition), color, moves);
+        return moves.toChessMoves();
     }
-}
 
+    static void generate(ChessBoard board, int from, ChessGame.TeamColor color, MoveList moves) {
+        KingKnightShift.shift(board, from, Attacks.knight(from), color, moves);
+    }
+}
@@ -0,0 +1,163 @@
+package chess;
+
+import chess.ChessGame.TeamColor;
+import chess.ChessPiece.PieceType;
+
+/**
+ * Generates only legal moves, without playing each candidate to see whether it
+ * leaves the king in check.
+ * <p>
+ * For each position the checkers, the pinned pieces and the evasion mask are
+ * worked out once. Non-king moves must land inside the evasion mask and pinned
+ * pieces must stay on the line through their king; king moves are kept if the
+ * destination is not attacked once the king has stepped off its square.
+ * <p>
+ * A side with no king has no legal moves, matching ChessGame treating a missing
+ * king as in check. Boards with more than one king of a color fall back to
+ * playing each candidate on the board.
+ */
+public final class LegalMoveGenerator {
+
+    private LegalMoveGenerator() {
+    }
+
+    /**
+     * Appends every legal move for the given side.
+     */
+    public static void generate(ChessBoard board, TeamColor color, MoveList moves) {
+        generate(board, color, board.occupancy(color), moves, false);
+    }
+
+    /**
+     * Appends the legal moves of the piece on the given square, if any.
+     */
+    public static void generate(ChessBoard board, int square, MoveList moves) {
+        int piece = board.pieceAt(square);
+        if (piece != ChessBoard.NO_PIECE) {
+            generate(board, ChessBoard.colorOf(piece), 1L << square, moves, false);
+        }
+    }
+
+    /**
+     * @return true if the given side has at least one legal move, using the
+     * list only as scratch space
+     */
+    public static boolean hasLegalMove(ChessBoard board, TeamColor color, MoveList scratch) {
+        scratch.clear();
+        return generate(board, color, board.occupancy(color), scratch, true);
+    }
+
+    /**
+     * @return true if firstOnly is set and a legal move was found
+     */
+    private static boolean generate(ChessBoard board, TeamColor color, long fromSquares, MoveList moves,
+                                    boolean firstOnly) {
+        int king = board.kingSquare(color);
+        if (king == ChessBoard.NO_SQUARE) {
+            return false;
+        }
+        long kings = board.pieces(color, PieceType.KING);
+        if ((kings & (kings - 1)) != 0) {
+            return generateByTrial(board, color, fromSquares, moves, firstOnly);
+        }
+
+        TeamColor enemy = color == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+        long occupied = board.occupied();
+        long checkers = board.attackersTo(king, enemy, occupied);
+        long pinned = pinnedPieces(board, king, color, enemy, occupied);
+
+        long evasionMask = -1L;
+        if (checkers != 0) {
+            if ((checkers & (checkers - 1)) != 0) {
+                //double check, only the king can move
+                fromSquares &= kings;
+            } else {
+                int checker = Long.numberOfTrailingZeros(checkers);
+                evasionMask = checkers | Bitboards.between(king, checker);
+            }
+        }
+
+        long occupiedWithoutKing = occupied & ~kings;
+        while (fromSquares != 0) {
+            int from = Long.numberOfTrailingZeros(fromSquares);
+            fromSquares &= fromSquares - 1;
+
+            int start = moves.size();
+            ChessBoard.pieceFor(board.pieceAt(from)).pieceMoves(board, from, moves);
+            int kept = start;
+            if (from == king) {
+                for (int i = start; i < moves.size(); i++) {
+                    int move = moves.get(i);
+                    if (board.attackersTo(PackedMove.to(move), enemy, occupiedWithoutKing) == 0) {
+                        moves.set(kept++, move);
+                    }
+                }
+            } else {
+                long allowed = evasionMask;
+                if ((pinned & (1L << from)) != 0) {
+                    allowed &= Bitboards.line(king, from);
+                }
+                for (int i = start; i < moves.size(); i++) {
+                    int move = moves.get(i);
+                    if ((allowed & (1L << PackedMove.to(move))) != 0) {
+                        moves.set(kept++, move);
+                    }
+                }
+            }
+            moves.truncate(kept);
+            if (firstOnly && kept > start) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the pieces of the given color that are the only blocker between
+     * their king and an enemy slider
+     */
+    private static long pinnedPieces(ChessBoard board, int king, TeamColor color, TeamColor enemy, long occupied) {
+        long queens = board.pieces(enemy, PieceType.QUEEN);
+        long snipers = (Attacks.rook(king, 0L) & (board.pieces(enemy, PieceType.ROOK) | queens))
+                | (Attacks.bishop(king, 0L) & (board.pieces(enemy, PieceType.BISHOP) | queens));
+        long own = board.occupancy(color);
+        long pinned = 0L;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Bitboards.between(king, sniper) & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0 && (blockers & own) != 0) {
+                pinned |= blockers;
+            }
+        }
+        return pinned;
+    }
+
+    private static boolean generateByTrial(ChessBoard board, TeamColor color, long fromSquares,
+                                           MoveList moves, boolean firstOnly) {
+        TeamColor enemy = color == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+        while (fromSquares != 0) {
+            int from = Long.numberOfTrailingZeros(fromSquares);
+            fromSquares &= fromSquares - 1;
+
+            int start = moves.size();
+            ChessBoard.pieceFor(board.pieceAt(from)).pieceMoves(board, from, moves);
+            int kept = start;
+            for (int i = start; i < moves.size(); i++) {
+                int move = moves.get(i);
+                board.makeMove(move);
+                int king = board.kingSquare(color);
+                boolean inCheck = king == ChessBoard.NO_SQUARE || board.isSquareAttacked(king, enemy);
+                board.unmakeMove();
+                if (!inCheck) {
+                    moves.set(kept++, move);
+                }
+            }
+            moves.truncate(kept);
+            if (firstOnly && kept > start) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
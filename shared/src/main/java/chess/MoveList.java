@@ -0,0 +1,79 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A reusable, growable buffer of {@link PackedMove} ints. Callers keep one
+ * around and {@link #clear()} it between positions so move generation does
+ * not allocate.
+ */
+public final class MoveList {
+
+    private int[] moves;
+    private int size = 0;
+
+    public MoveList() {
+        this(256);
+    }
+
+    public MoveList(int capacity) {
+        moves = new int[capacity];
+    }
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    /**
+     * Adds a move from the start square to every square set in targets,
+     * flagging the ones that land on an enemy piece.
+     */
+    void addTargets(int from, long targets, long enemies) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            int move = PackedMove.of(from, to, null);
+            add((enemies & (1L << to)) != 0 ? move | PackedMove.CAPTURE : move);
+        }
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Drops the last moves so the list is the given size again.
+     */
+    public void truncate(int newSize) {
+        size = newSize;
+    }
+
+    public Collection<ChessMove> toChessMoves() {
+        Collection<ChessMove> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(PackedMove.toChessMove(moves[i]));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,60 @@
+package chess;
+
+/**
+ * Encodes a move as a single int so move generation can fill primitive buffers
+ * instead of allocating ChessMove objects.
+ * <p>
+ * Layout: bits 0-5 start square, bits 6-11 end square, bits 12-14 promotion
+ * piece (0 for none, otherwise {@code PieceType.ordinal() + 1}), and flag bits
+ * from bit 15 up. Squares use the {@link ChessBoard} numbering, a1 = 0 through h8 = 63.
+ */
+public final class PackedMove {
+
+    public static final int CAPTURE = 1 << 15;
+    public static final int DOUBLE_PUSH = 1 << 16;
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private PackedMove() {
+    }
+
+    public static int of(int from, int to, ChessPiece.PieceType promotion) {
+        return from | (to << 6) | (promotion == null ? 0 : (promotion.ordinal() + 1) << 12);
+    }
+
+    public static int of(ChessMove move) {
+        return of(Bitboards.square(move.getStartPosition()), Bitboards.square(move.getEndPosition()),
+                move.getPromotionPiece());
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    /**
+     * @return the promotion piece, or null if the move is not a promotion
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        int promotion = (move >>> 12) & 0x7;
+        return promotion == 0 ? null : TYPES[promotion - 1];
+    }
+
+    public static boolean hasFlag(int move, int flag) {
+        return (move & flag) != 0;
+    }
+
+    /**
+     * @return the move without its flag bits, for comparing moves by squares and promotion
+     */
+    public static int withoutFlags(int move) {
+        return move & 0x7FFF;
+    }
+
+    public static ChessMove toChessMove(int move) {
+        return ChessMove.of(move);
+    }
+}
@@ -2,10 +2,7 @@ package chess;
 
 import chess.ChessGame.TeamColor;
 import chess.ChessPiece.PieceType;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Iterator;
 
 public class Pawn {
 
@@ -18,73 +15,56 @@ public class Pawn {
     }
 
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        Collection<ChessMove> moves = new HashSet<>();
+        MoveList moves = new MoveList(12);
+        generate(board, Bitboards.square(myPosition), color, moves);
+        return moves.toChessMoves();
+    }
 
-        int c = myPosition.getColumn();
-        int r = myPosition.getRow();
+    static void generate(ChessBoard board, int from, TeamColor color, MoveList moves) {
+        int c = Bitboards.column(from);
+        int r = Bitboards.row(from);
 
-        int direction = (this.color == TeamColor.WHITE) ? 1 : -1;
-        int promotionRow = (this.color == TeamColor.WHITE) ? 8 : 1;
+        int direction = (color == TeamColor.WHITE) ? 1 : -1;
+        int promotionRow = (color == TeamColor.WHITE) ? 8 : 1;
+        int startRow = (color == TeamColor.WHITE) ? 2 : 7;
+        long occupied = board.occupied();
+        long enemies = board.occupancy(color == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE);
 
         //one square forward
-        ChessPosition oneStep = new ChessPosition(r + direction, c );
-        if (isValidPosition(oneStep) && board.getPiece(oneStep) == null) {
-            if (oneStep.getRow() == promotionRow) {
-                addPromotionMoves(moves, myPosition, oneStep);
-            } else {
-                moves.add(new ChessMove(myPosition, oneStep, null));
-            }
+        int ahead = r + direction;
+        if (ahead < 1 || ahead > 8) {
+            return;
+        }
+        int oneStep = Bitboards.square(ahead, c);
+        if ((occupied & (1L << oneStep)) == 0) {
+            addMove(moves, from, oneStep, 0, ahead == promotionRow);
 
             //two squares forward from starting position
-            boolean isAtStartRow = (this.color == TeamColor.WHITE && r == 2) || (this.color ==
-                    TeamColor.BLACK && r == 7);
-            if (isAtStartRow) {
-                ChessPosition twoStep = new ChessPosition(r + 2 * direction, c);
-                if (board.getPiece(twoStep) == null) {
-                    moves.add(new ChessMove(myPosition, twoStep, null));
+            if (r == startRow) {
+                int twoStep = Bitboards.square(r + 2 * direction, c);
+                if ((occupied & (1L << twoStep)) == 0) {
+                    moves.add(PackedMove.of(from, twoStep, null) | PackedMove.DOUBLE_PUSH);
                 }
             }
         }
 
-        //capture diagonally left
-        ChessPosition diagLeft = new ChessPosition(r + direction, c - 1);
-        if (isValidPosition(diagLeft)) {
-            ChessPiece pieceAtDiagLeft = board.getPiece(diagLeft);
-            if (pieceAtDiagLeft != null && pieceAtDiagLeft.getTeamColor() != this.color) {
-                if (diagLeft.getRow() == promotionRow) {
-                    addPromotionMoves(moves, myPosition, diagLeft);
-                } else {
-                    moves.add(new ChessMove(myPosition, diagLeft, null));
-                }
-            }
+        //capture diagonally
+        long captures = Attacks.pawn(color, from) & enemies;
+        while (captures != 0) {
+            int to = Long.numberOfTrailingZeros(captures);
+            captures &= captures - 1;
+            addMove(moves, from, to, PackedMove.CAPTURE, ahead == promotionRow);
         }
-
-        //capture diagonally right
-        ChessPosition diagRight = new ChessPosition(r + direction, c + 1);
-        if (isValidPosition(diagRight)) {
-            ChessPiece pieceAtDiagRight = board.getPiece(diagRight);
-            if (pieceAtDiagRight != null && pieceAtDiagRight.getTeamColor() != this.color) {
-                if (diagRight.getRow() == promotionRow) {
-                    addPromotionMoves(moves, myPosition, diagRight);
-                } else {
-                    moves.add(new ChessMove(myPosition, diagRight, null));
-                }
-            }
-        }
-
-        return moves;
     }
 
-    private boolean isValidPosition(ChessPosition pos) {
-        int c = pos.getColumn();
-        int r = pos.getRow();
-        return c > 0 && c < 9 && r > 0 && r < 9;
-    }
-
-    private void addPromotionMoves(Collection<ChessMove> moves, ChessPosition from, ChessPosition to) {
-        moves.add(new ChessMove(from, to, PieceType.QUEEN));
-        moves.add(new ChessMove(from, to, PieceType.ROOK));
-        moves.add(new ChessMove(from, to, PieceType.BISHOP));
-        moves.add(new ChessMove(from, to, PieceType.KNIGHT));
+    private static void addMove(MoveList moves, int from, int to, int flags, boolean promotes) {
+        if (promotes) {
+            moves.add(PackedMove.of(from, to, PieceType.QUEEN) | flags);
+            moves.add(PackedMove.of(from, to, PieceType.ROOK) | flags);
+            moves.add(PackedMove.of(from, to, PieceType.BISHOP) | flags);
+            moves.add(PackedMove.of(from, to, PieceType.KNIGHT) | flags);
+        } else {
+            moves.add(PackedMove.of(from, to, null) | flags);
+        }
     }
 }
@@ -0,0 +1,216 @@
+package chess;
+
+import chess.ChessGame.TeamColor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth (perft).
+ * <p>
+ * The counts are a correctness oracle for move generation, since they are known
+ * for standard positions, and the time taken gives a nodes-per-second figure.
+ * divide splits the count by root move, optionally across a ForkJoinPool.
+ * <p>
+ * Run from the command line with
+ * {@code java -cp shared/target/classes chess.Perft <depth> [fen] [--parallel]},
+ * or {@code chess.Perft --suite [maxDepth]} to check every standard position.
+ */
+public final class Perft {
+
+    /**
+     * A position with its known node counts; {@code nodes[d - 1]} is perft(d).
+     */
+    public record Position(String name, String fen, long... nodes) {
+    }
+
+    /**
+     * Standard positions without castling rights, at depths where no en passant
+     * capture is possible, since neither rule exists in this game.
+     */
+    public static final List<Position> STANDARD_POSITIONS = List.of(
+            new Position("start position",
+                    "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1",
+                    20L, 400L, 8_902L, 197_281L),
+            new Position("cpw position 3",
+                    "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    14L, 191L),
+            new Position("cpw position 6",
+                    "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    46L, 2_079L, 89_890L, 3_894_594L)
+    );
+
+    private Perft() {
+    }
+
+    /**
+     * @return the number of leaf nodes depth plies below the game's current position
+     */
+    public static long perft(ChessGame game, int depth) {
+        return perft(game.getBoard(), game.getTeamTurn(), depth);
+    }
+
+    public static long perft(ChessBoard board, TeamColor side, int depth) {
+        if (depth <= 0) {
+            return 1L;
+        }
+        MoveList[] lists = new MoveList[depth + 1];
+        for (int i = 1; i <= depth; i++) {
+            lists[i] = new MoveList();
+        }
+        return perft(board, side, depth, lists);
+    }
+
+    private static long perft(ChessBoard board, TeamColor side, int depth, MoveList[] lists) {
+        MoveList moves = lists[depth];
+        moves.clear();
+        LegalMoveGenerator.generate(board, side, moves);
+        if (depth == 1) {
+            return moves.size();
+        }
+        TeamColor next = opponent(side);
+        long nodes = 0L;
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            nodes += perft(board, next, depth - 1, lists);
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * @return the perft count below each root move, in generation order
+     */
+    public static Map<ChessMove, Long> divide(ChessGame game, int depth) {
+        ChessBoard board = game.getBoard();
+        TeamColor side = game.getTeamTurn();
+        Map<ChessMove, Long> result = new LinkedHashMap<>();
+        MoveList moves = rootMoves(board, side);
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            result.put(PackedMove.toChessMove(moves.get(i)), perft(board, opponent(side), depth - 1));
+            board.unmakeMove();
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #divide(ChessGame, int)}, with each root move counted on its
+     * own copy of the board as a task in the pool.
+     */
+    public static Map<ChessMove, Long> divide(ChessGame game, int depth, ForkJoinPool pool) {
+        ChessBoard board = game.getBoard();
+        TeamColor side = game.getTeamTurn();
+        MoveList moves = rootMoves(board, side);
+        List<RootTask> tasks = new ArrayList<>(moves.size());
+        for (int i = 0; i < moves.size(); i++) {
+            tasks.add(new RootTask(board, side, moves.get(i), depth - 1));
+        }
+        return pool.invoke(new RecursiveTask<>() {
+            @Override
+            protected Map<ChessMove, Long> compute() {
+                invokeAll(tasks);
+                Map<ChessMove, Long> result = new LinkedHashMap<>();
+                for (RootTask task : tasks) {
+                    result.put(PackedMove.toChessMove(task.move), task.join());
+                }
+                return result;
+            }
+        });
+    }
+
+    private static MoveList rootMoves(ChessBoard board, TeamColor side) {
+        MoveList moves = new MoveList();
+        LegalMoveGenerator.generate(board, side, moves);
+        return moves;
+    }
+
+    private static TeamColor opponent(TeamColor side) {
+        return side == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+    }
+
+    private static final class RootTask extends RecursiveTask<Long> {
+        private final ChessBoard board;
+        private final TeamColor side;
+        private final int move;
+        private final int depth;
+
+        RootTask(ChessBoard board, TeamColor side, int move, int depth) {
+            this.board = new ChessBoard(board);
+            this.side = side;
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            board.makeMove(move);
+            return perft(board, opponent(side), depth);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("usage: Perft <depth> [fen] [--parallel] | Perft --suite [maxDepth]");
+            return;
+        }
+        if (args[0].equals("--suite")) {
+            int maxDepth = args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+            boolean allPassed = true;
+            for (Position position : STANDARD_POSITIONS) {
+                for (int depth = 1; depth <= Math.min(maxDepth, position.nodes().length); depth++) {
+                    long expected = position.nodes()[depth - 1];
+                    long start = System.nanoTime();
+                    long nodes = perft(ChessGame.fromFen(position.fen()), depth);
+                    long elapsed = System.nanoTime() - start;
+                    boolean passed = nodes == expected;
+                    allPassed &= passed;
+                    System.out.printf("%-16s depth %d: %,d (expected %,d) %s %s%n", position.name(), depth,
+                            nodes, expected, passed ? "ok" : "MISMATCH", rate(nodes, elapsed));
+                }
+            }
+            System.exit(allPassed ? 0 : 1);
+        }
+
+        int depth = Integer.parseInt(args[0]);
+        boolean parallel = false;
+        String fen = STANDARD_POSITIONS.get(0).fen();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--parallel")) {
+                parallel = true;
+            } else {
+                fen = args[i];
+            }
+        }
+        ChessGame game = ChessGame.fromFen(fen);
+        long start = System.nanoTime();
+        Map<ChessMove, Long> counts = parallel ? divide(game, depth, ForkJoinPool.commonPool()) : divide(game, depth);
+        long elapsed = System.nanoTime() - start;
+        long total = 0L;
+        for (Map.Entry<ChessMove, Long> entry : counts.entrySet()) {
+            System.out.println(moveText(entry.getKey()) + ": " + entry.getValue());
+            total += entry.getValue();
+        }
+        System.out.printf("%nnodes %,d %s%n", total, rate(total, elapsed));
+    }
+
+    private static String rate(long nodes, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        return String.format("(%.3fs, %,.0f nodes/sec)", seconds, nodes / Math.max(seconds, 1e-9));
+    }
+
+    private static String moveText(ChessMove move) {
+        String text = squareText(move.getStartPosition()) + squareText(move.getEndPosition());
+        ChessPiece.PieceType promotion = move.getPromotionPiece();
+        return promotion == null ? text : text + (promotion == ChessPiece.PieceType.KNIGHT ? 'n'
+                : Character.toLowerCase(promotion.name().charAt(0)));
+    }
+
+    private static String squareText(ChessPosition position) {
+        return "" + (char) ('a' + position.getColumn() - 1) + position.getRow();
+    }
+}
@@ -2,7 +2,6 @@ package chess;
 
 import chess.ChessPiece.PieceType;
 import java.util.Collection;
-import java.util.HashSet;
 
 public class Queen {
     protected ChessGame.TeamColor color;
@@ -13,39 +12,14 @@ public class Queen {
     }
 
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        Collection<ChessMove> moves = new HashSet();
-        this.shift(board, myPosition, moves, 1, 1);
-        this.shift(board, myPosition, moves, 1, 0);
-        this.shift(board, myPosition, moves, 1, -1);
-        this.shift(board, myPosition, moves, 0, -1);
-        this.shift(board, myPosition, moves, -1, -1);
-        this.shift(board, myPosition, moves, -1, 0);
-        this.shift(board, myPosition, moves, -1, 1);
-        this.shift(board, myPosition, moves, 0, 1);
-        return moves;
+        MoveList moves = new MoveList(32);
+        generate(board, Bitboards.square(myPosition), color, moves);
+        return moves.toChessMoves();
     }
 
-    private void shift(ChessBoard board, ChessPosition myPosition, Collection<ChessMove> moves, int cDirection, int rDirection) {
-        int c = myPosition.getColumn();
-        int r = myPosition.getRow();
-
-        while (true) {
-            c += cDirection;
-            r += rDirection;
-            if (c > 0 && c < 9 && r > 0 && r < 9) {
-                ChessPosition pos = new ChessPosition(r, c);
-                if (board.getPiece(pos) == null) {
-                    moves.add(new ChessMove(myPosition, pos, null));
-                } else if (board.getPiece(pos).getTeamColor() != this.color) {
-                    moves.add(new ChessMove(myPosition, pos, null));
-                    return;
-                } else {
-                    return;
-                }
-            } else {
-                return;
-            }
-        }
+    static void generate(ChessBoard board, int from, ChessGame.TeamColor color, MoveList moves) {
+        long occupied = board.occupied();
+        long targets = Attacks.queen(from, occupied) & ~board.occupancy(color);
+        moves.addTargets(from, targets, occupied);
     }
 }
-
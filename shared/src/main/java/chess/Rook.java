@@ -1,7 +1,6 @@
 package chess;
 
 import java.util.Collection;
-import java.util.HashSet;
 
 public class Rook {
 
@@ -14,33 +13,13 @@ public class Rook {
 
     //@Override
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        Collection<ChessMove> moves = new HashSet<ChessMove>();
-        shift(board, myPosition, moves, 0, 1);
-        shift(board, myPosition, moves, 1, 0);
-        shift(board, myPosition, moves, 0, -1);
-        shift(board, myPosition, moves, -1, 0);
-        return moves;
+        MoveList moves = new MoveList(16);
+        generate(board, Bitboards.square(myPosition), color, moves);
+        return moves.toChessMoves();
     }
 
-    private void shift(ChessBoard board, ChessPosition myPosition, Collection<ChessMove> moves, int cDirection, int rDirection) {
-        int c = myPosition.getColumn();
-        int r = myPosition.getRow();
-        while(true) {
-            c += cDirection;
-            r += rDirection;
-            if (c > 0 && c < 9 && r > 0 && r < 9) {
-                ChessPosition pos = new ChessPosition(r, c);
-                if (board.getPiece(pos) == null) {
-                    moves.add(new ChessMove((ChessPosition) myPosition, pos, null));
-                } else if (board.getPiece(pos).getTeamColor() != this.color) {
-                    moves.add(new ChessMove((ChessPosition) myPosition, pos, null));
-                    return;
-                } else {
-                    return;
-                }
-            } else {
-                return;
-            }
-        }
+    static void generate(ChessBoard board, int from, ChessGame.TeamColor color, MoveList moves) {
+        long targets = Attacks.rook(from, board.occupied()) & ~board.occupancy(color);
+        moves.addTargets(from, targets, board.occupied());
     }
 }
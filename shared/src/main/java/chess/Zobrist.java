@@ -0,0 +1,36 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing: a position's key is the XOR of one key per
+ * (piece, square) on the board, plus {@link #BLACK_TO_MOVE} when it is black's
+ * turn. Moving a piece is two XORs, so keys can be kept up to date incrementally.
+ * <p>
+ * The keys come from a fixed seed so a position hashes the same in every JVM;
+ * keys that have been stored or sent to clients depend on the seed never changing.
+ * This game has no castling or en passant, so there are no keys for them.
+ */
+final class Zobrist {
+
+    static final long BLACK_TO_MOVE;
+
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x9E3779B97F4A7C15L);
+        for (long[] keys : PIECE_SQUARE) {
+            for (int square = 0; square < 64; square++) {
+                keys[square] = random.nextLong();
+            }
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    static long pieceSquare(int piece, int square) {
+        return PIECE_SQUARE[piece][square];
+    }
+}
@@ -0,0 +1,120 @@
+package chess.codec;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+/**
+ * Compact, versioned binary form of a ChessGame for storage.
+ * <p>
+ * Version 1 layout:
+ * <pre>
+ * byte 0      format version (1)
+ * byte 1      flags: bit 0 black to move, bit 1 game over; other bits reserved
+ * bytes 2-9   occupancy bitboard, big-endian, bit (row - 1) * 8 + (col - 1) set for each piece
+ * bytes 10-   one 4-bit piece code per occupied square in ascending square order,
+ *             high nibble first: color * 6 + PieceType ordinal
+ * </pre>
+ * The starting position is 26 bytes. This game has no castling or en passant,
+ * so there is no state for them; a later version can claim a reserved flag bit.
+ * The first byte is never '{', so callers can tell these apart from JSON.
+ */
+public final class GameCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final int BLACK_TO_MOVE = 1;
+    private static final int GAME_OVER = 1 << 1;
+    private static final int HEADER_BYTES = 10;
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+    private static final ChessPiece[] PIECES = new ChessPiece[12];
+
+    static {
+        for (int code = 0; code < PIECES.length; code++) {
+            ChessGame.TeamColor color = code < 6 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+            PIECES[code] = new ChessPiece(color, TYPES[code % 6]);
+        }
+    }
+
+    private GameCodec() {
+    }
+
+    public static byte[] encode(ChessGame game) {
+        ChessBoard board = game.getBoard();
+        long occupied = 0L;
+        int count = 0;
+        for (int square = 0; square < 64; square++) {
+            if (board.getPiece(position(square)) != null) {
+                occupied |= 1L << square;
+                count++;
+            }
+        }
+
+        byte[] bytes = new byte[HEADER_BYTES + (count + 1) / 2];
+        bytes[0] = VERSION;
+        int flags = 0;
+        if (game.getTeamTurn() == ChessGame.TeamColor.BLACK) {
+            flags |= BLACK_TO_MOVE;
+        }
+        if (game.isGameOver()) {
+            flags |= GAME_OVER;
+        }
+        bytes[1] = (byte) flags;
+        for (int i = 0; i < 8; i++) {
+            bytes[2 + i] = (byte) (occupied >>> (56 - 8 * i));
+        }
+
+        int nibble = 0;
+        for (long remaining = occupied; remaining != 0; remaining &= remaining - 1) {
+            ChessPiece piece = board.getPiece(position(Long.numberOfTrailingZeros(remaining)));
+            int code = piece.getTeamColor().ordinal() * 6 + piece.getPieceType().ordinal();
+            int index = HEADER_BYTES + nibble / 2;
+            bytes[index] |= (byte) ((nibble & 1) == 0 ? code << 4 : code);
+            nibble++;
+        }
+        return bytes;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a game in a known version
+     */
+    public static ChessGame decode(byte[] bytes) {
+        if (bytes == null || bytes.length < HEADER_BYTES) {
+            throw new IllegalArgumentException("Encoded game is too short");
+        }
+        if (bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported game encoding version " + bytes[0]);
+        }
+        int flags = bytes[1];
+        long occupied = 0L;
+        for (int i = 0; i < 8; i++) {
+            occupied = (occupied << 8) | (bytes[2 + i] & 0xFF);
+        }
+        if (bytes.length != HEADER_BYTES + (Long.bitCount(occupied) + 1) / 2) {
+            throw new IllegalArgumentException("Encoded game has the wrong length");
+        }
+
+        ChessBoard board = new ChessBoard();
+        int nibble = 0;
+        for (long remaining = occupied; remaining != 0; remaining &= remaining - 1) {
+            int packed = bytes[HEADER_BYTES + nibble / 2];
+            int code = ((nibble & 1) == 0 ? packed >>> 4 : packed) & 0xF;
+            if (code >= PIECES.length) {
+                throw new IllegalArgumentException("Encoded game has an unknown piece code " + code);
+            }
+            board.addPiece(position(Long.numberOfTrailingZeros(remaining)), PIECES[code]);
+            nibble++;
+        }
+
+        ChessGame game = new ChessGame(board,
+                (flags & BLACK_TO_MOVE) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+        game.setGameOver((flags & GAME_OVER) != 0);
+        return game;
+    }
+
+    private static ChessPosition position(int square) {
+        return ChessPosition.of(square / 8 + 1, square % 8 + 1);
+    }
+}
@@ -0,0 +1,6 @@
+package model;
+
+/**
+ * The listing fields of a game, without its board.
+ */
+public record GameSummary(int gameID, String whiteUsername, String blackUsername, String gameName) {}
@@ -0,0 +1,253 @@
+package websocket.codec;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.PackedMove;
+import chess.codec.GameCodec;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ServerMessage;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Fixed-layout binary frames for websocket commands and server messages, an
+ * alternative to JSON for clients that want smaller frames and cheaper parsing.
+ * <p>
+ * Version 1 layout, all numbers big-endian:
+ * <pre>
+ * command
+ * byte 0       format version (1)
+ * byte 1       CommandType ordinal
+ * bytes 2-5    game ID
+ * then         auth token as a string
+ * CONNECT      1 byte BoardFormat ordinal
+ * MAKE_MOVE    2 bytes PackedMove without flags
+ *
+ * server message
+ * byte 0       format version (1)
+ * byte 1       ServerMessageType ordinal
+ * LOAD_GAME    1 byte player color (0 none, 1 WHITE, 2 BLACK, 3 OBSERVER), 4 bytes ply or -1,
+ *              then a GameCodec game to the end of the frame
+ * MOVE_APPLIED 2 bytes PackedMove without flags, 4 bytes ply, 8 bytes position key
+ * NOTIFICATION the message as a string
+ * ERROR        the error message as a string
+ * </pre>
+ * A string is a 2-byte length, 0xFFFF for null, then that many bytes of UTF-8.
+ * LOAD_GAME is only encoded from a FEN board, since that is what knows whose turn
+ * it is; it decodes back to a FEN board. The opening LOAD_GAME is 33 bytes.
+ */
+public final class MessageCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final int NULL_STRING = 0xFFFF;
+    private static final String[] PLAYER_COLORS = {null, "WHITE", "BLACK", "OBSERVER"};
+    private static final UserGameCommand.CommandType[] COMMAND_TYPES = UserGameCommand.CommandType.values();
+    private static final UserGameCommand.BoardFormat[] BOARD_FORMATS = UserGameCommand.BoardFormat.values();
+    private static final ServerMessage.ServerMessageType[] MESSAGE_TYPES = ServerMessage.ServerMessageType.values();
+
+    private MessageCodec() {
+    }
+
+    public static byte[] encodeCommand(UserGameCommand command) {
+        byte[] token = utf8(command.getAuthToken());
+        ByteBuffer out = ByteBuffer.allocate(2 + 4 + stringBytes(token) + 2);
+        out.put(VERSION);
+        out.put((byte) command.getCommandType().ordinal());
+        out.putInt(command.getGameID());
+        putString(out, token);
+        switch (command.getCommandType()) {
+            case CONNECT -> out.put((byte) command.getBoardFormat().ordinal());
+            case MAKE_MOVE -> out.putShort((short) PackedMove.of(command.getMove()));
+            default -> {
+            }
+        }
+        return finish(out);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a command in a known version
+     */
+    public static UserGameCommand decodeCommand(byte[] bytes, int offset, int length) {
+        ByteBuffer in = ByteBuffer.wrap(bytes, offset, length);
+        try {
+            checkVersion(in);
+            UserGameCommand.CommandType type = lookup(COMMAND_TYPES, in.get(), "command type");
+            int gameID = in.getInt();
+            String authToken = getString(in);
+            UserGameCommand command = switch (type) {
+                case CONNECT -> new UserGameCommand(type, authToken, gameID,
+                        lookup(BOARD_FORMATS, in.get(), "board format"));
+                case MAKE_MOVE -> new UserGameCommand(type, authToken, gameID,
+                        getMove(in));
+                default -> new UserGameCommand(type, authToken, gameID);
+            };
+            checkEnd(in);
+            return command;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Encoded command is too short");
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the message has no binary form, such as a
+     *                                  LOAD_GAME without a FEN board
+     */
+    public static byte[] encodeMessage(ServerMessage message) {
+        ServerMessage.ServerMessageType type = message.getServerMessageType();
+        return switch (type) {
+            case LOAD_GAME -> {
+                if (message.getFen() == null) {
+                    throw new IllegalArgumentException("Only FEN boards have a binary form");
+                }
+                byte[] game = GameCodec.encode(ChessGame.fromFen(message.getFen()));
+                ByteBuffer out = header(type, 1 + 4 + game.length);
+                out.put((byte) playerColorCode(message.getPlayerColor()));
+                out.putInt(message.getPly() != null ? message.getPly() : -1);
+                out.put(game);
+                yield finish(out);
+            }
+            case MOVE_APPLIED -> {
+                ByteBuffer out = header(type, 2 + 4 + 8);
+                out.putShort((short) PackedMove.of(message.getMove()));
+                out.putInt(message.getPly());
+                out.putLong(message.getPositionKey());
+                yield finish(out);
+            }
+            case NOTIFICATION, ERROR -> {
+                byte[] text = utf8(type == ServerMessage.ServerMessageType.ERROR
+                        ? message.getErrorMessage() : message.getMessage());
+                ByteBuffer out = header(type, stringBytes(text));
+                putString(out, text);
+                yield finish(out);
+            }
+        };
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a message in a known version
+     */
+    public static ServerMessage decodeMessage(byte[] bytes, int offset, int length) {
+        ByteBuffer in = ByteBuffer.wrap(bytes, offset, length);
+        try {
+            checkVersion(in);
+            ServerMessage.ServerMessageType type = lookup(MESSAGE_TYPES, in.get(), "message type");
+            return switch (type) {
+                case LOAD_GAME -> {
+                    String playerColor = lookup(PLAYER_COLORS, in.get(), "player color");
+                    int ply = in.getInt();
+                    byte[] game = new byte[in.remaining()];
+                    in.get(game);
+                    String fen = GameCodec.decode(game).toFen();
+                    yield ply < 0 ? ServerMessage.loadGameFen(fen, playerColor)
+                            : ServerMessage.loadGameFen(fen, playerColor, ply);
+                }
+                case MOVE_APPLIED -> {
+                    ServerMessage message = ServerMessage.moveApplied(
+                            getMove(in), in.getInt(), in.getLong());
+                    checkEnd(in);
+                    yield message;
+                }
+                case NOTIFICATION, ERROR -> {
+                    ServerMessage message = new ServerMessage(type, getString(in));
+                    checkEnd(in);
+                    yield message;
+                }
+            };
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Encoded message is too short");
+        }
+    }
+
+    private static ByteBuffer header(ServerMessage.ServerMessageType type, int bodyBytes) {
+        ByteBuffer out = ByteBuffer.allocate(2 + bodyBytes);
+        out.put(VERSION);
+        out.put((byte) type.ordinal());
+        return out;
+    }
+
+    //commands allocate for their largest form, so trim to what was written
+    private static byte[] finish(ByteBuffer out) {
+        byte[] bytes = new byte[out.position()];
+        out.flip().get(bytes);
+        return bytes;
+    }
+
+    private static void checkVersion(ByteBuffer in) {
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported message encoding version " + version);
+        }
+    }
+
+    private static void checkEnd(ByteBuffer in) {
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException("Encoded message has " + in.remaining() + " extra bytes");
+        }
+    }
+
+    private static <T> T lookup(T[] values, byte code, String what) {
+        if (code < 0 || code >= values.length) {
+            throw new IllegalArgumentException("Unknown " + what + " " + code);
+        }
+        return values[code];
+    }
+
+    //bits 12-14 have room for one more code than there are piece types, which PackedMove can't look up
+    private static ChessMove getMove(ByteBuffer in) {
+        int move = in.getShort() & 0x7FFF;
+        int promotion = (move >>> 12) & 0x7;
+        if (promotion > ChessPiece.PieceType.values().length) {
+            throw new IllegalArgumentException("Unknown promotion piece " + promotion);
+        }
+        return PackedMove.toChessMove(move);
+    }
+
+    private static int playerColorCode(String playerColor) {
+        for (int code = 0; code < PLAYER_COLORS.length; code++) {
+            if (Objects.equals(PLAYER_COLORS[code], playerColor)) {
+                return code;
+            }
+        }
+        throw new IllegalArgumentException("Unknown player color " + playerColor);
+    }
+
+    //null stays null so putString can mark it
+    private static byte[] utf8(String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_STRING) {
+            throw new IllegalArgumentException("String too long to encode");
+        }
+        return bytes;
+    }
+
+    private static int stringBytes(byte[] text) {
+        return 2 + (text == null ? 0 : text.length);
+    }
+
+    private static void putString(ByteBuffer out, byte[] text) {
+        if (text == null) {
+            out.putShort((short) NULL_STRING);
+            return;
+        }
+        out.putShort((short) text.length);
+        out.put(text);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] text = new byte[length];
+        in.get(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+}
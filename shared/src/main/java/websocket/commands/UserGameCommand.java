@@ -27,6 +27,9 @@ public class UserGameCommand {
 
     private ChessMove move;
 
+    //for CONNECT, how the server should send boards; null means JSON
+    private BoardFormat boardFormat;
+
     //constructor for CONNECT, LEAVE, RESIGN
     public UserGameCommand(CommandType commandType, String authToken, Integer gameID) {
         this.commandType = commandType;
@@ -43,6 +46,14 @@ public class UserGameCommand {
         this.moveTo = moveTo;
     }
 
+    //constructor for MAKE_MOVE with the move itself
+    public UserGameCommand(CommandType commandType, String authToken, Integer gameID, ChessMove move) {
+        this.commandType = commandType;
+        this.authToken = authToken;
+        this.gameID = gameID;
+        this.move = move;
+    }
+
     //for highlight legal moves
     public UserGameCommand(CommandType commandType, String authToken, Integer gameID, String selectedSquare) {
         this.commandType = commandType;
@@ -51,11 +62,32 @@ public class UserGameCommand {
         this.selectedSquare = selectedSquare;
     }
 
+    //constructor for CONNECT with a board format
+    public UserGameCommand(CommandType commandType, String authToken, Integer gameID, BoardFormat boardFormat) {
+        this.commandType = commandType;
+        this.authToken = authToken;
+        this.gameID = gameID;
+        this.boardFormat = boardFormat;
+    }
+
     public enum CommandType {
         CONNECT,
         MAKE_MOVE,
         LEAVE,
-        RESIGN
+        RESIGN,
+        //asks for a fresh LOAD_GAME, for a MOVES client whose position no longer matches
+        RESYNC
+    }
+
+    /**
+     * How LOAD_GAME messages carry the board: the full JSON board, or a FEN string.
+     * MOVES clients get a FEN board with its ply on connect and after that only
+     * MOVE_APPLIED messages, which they play on their own copy of the game.
+     */
+    public enum BoardFormat {
+        JSON,
+        FEN,
+        MOVES
     }
 
     public CommandType getCommandType() {
@@ -85,6 +117,10 @@ public class UserGameCommand {
         return move;
     }
 
+    public BoardFormat getBoardFormat() {
+        return boardFormat != null ? boardFormat : BoardFormat.JSON;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -100,12 +136,13 @@ public class UserGameCommand {
                 Objects.equals(getMoveFrom(), that.getMoveFrom()) &&
                 Objects.equals(getMoveTo(), that.getMoveTo()) &&
                 Objects.equals(getSelectedSquare(), that.getSelectedSquare()) &&
-                Objects.equals(getMove(), that.getMove());
+                Objects.equals(getMove(), that.getMove()) &&
+                getBoardFormat() == that.getBoardFormat();
     }
 
     @Override
     public int hashCode() {
         return Objects.hash(getCommandType(), getAuthToken(), getGameID(),
-                getMoveFrom(), getMoveTo(), getSelectedSquare(), getMove());
+                getMoveFrom(), getMoveTo(), getSelectedSquare(), getMove(), getBoardFormat());
     }
 }
@@ -1,6 +1,7 @@
 package websocket.messages;
 
 import chess.ChessBoard;
+import chess.ChessMove;
 
 import java.util.List;
 import java.util.Objects;
@@ -16,14 +17,22 @@ public class ServerMessage {
 
     private String message;
     private ChessBoard game;
+    //set instead of game for clients that connected with the FEN board format
+    private String fen;
     private String playerColor;
     private List<String> legalMoves;
     private String errorMessage;
+    //for MOVE_APPLIED, and with ply alone on a LOAD_GAME sent to MOVES clients
+    private ChessMove move;
+    private Integer ply;
+    //hex rather than a number, since JSON numbers lose the low bits of a long in some clients
+    private String positionKey;
 
     public enum ServerMessageType {
         LOAD_GAME,
         ERROR,
-        NOTIFICATION
+        NOTIFICATION,
+        MOVE_APPLIED
     }
 
     public ServerMessage(ServerMessageType type) {
@@ -47,6 +56,36 @@ public class ServerMessage {
         this.playerColor = playerColor;
     }
 
+    //for board updates LOAD_GAME as FEN
+    public static ServerMessage loadGameFen(String fen, String playerColor) {
+        ServerMessage message = new ServerMessage(ServerMessageType.LOAD_GAME);
+        message.fen = fen;
+        message.playerColor = playerColor;
+        return message;
+    }
+
+    //for board updates LOAD_GAME as FEN, to a client that then follows the game by its moves
+    public static ServerMessage loadGameFen(String fen, String playerColor, int ply) {
+        ServerMessage message = loadGameFen(fen, playerColor);
+        message.ply = ply;
+        return message;
+    }
+
+    /**
+     * A move made in the game, for clients that keep their own copy of it.
+     *
+     * @param ply         how many moves the game has had, this one included
+     * @param positionKey the game's ChessGame.positionKey() after the move; a client
+     *                    whose copy gives a different key should send RESYNC
+     */
+    public static ServerMessage moveApplied(ChessMove move, int ply, long positionKey) {
+        ServerMessage message = new ServerMessage(ServerMessageType.MOVE_APPLIED);
+        message.move = move;
+        message.ply = ply;
+        message.positionKey = Long.toHexString(positionKey);
+        return message;
+    }
+
     //for sending legal moves
     public ServerMessage(ServerMessageType type, List<String> legalMoves) {
         this.serverMessageType = type;
@@ -65,6 +104,10 @@ public class ServerMessage {
         return game;
     }
 
+    public String getFen() {
+        return fen;
+    }
+
     public String getPlayerColor() {
         return playerColor;
     }
@@ -76,6 +119,21 @@ public class ServerMessage {
         return errorMessage;
     }
 
+    public ChessMove getMove() {
+        return move;
+    }
+
+    public Integer getPly() {
+        return ply;
+    }
+
+    /**
+     * @return the position key as ChessGame.positionKey() gives it, or null if this message has none
+     */
+    public Long getPositionKey() {
+        return positionKey != null ? Long.parseUnsignedLong(positionKey, 16) : null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -88,13 +146,18 @@ public class ServerMessage {
         return getServerMessageType() == that.getServerMessageType() &&
                 Objects.equals(getMessage(), that.getMessage()) &&
                 Objects.equals(getGame(), that.getGame()) &&
+                Objects.equals(getFen(), that.getFen()) &&
                 Objects.equals(getPlayerColor(), that.getPlayerColor()) &&
                 Objects.equals(getLegalMoves(), that.getLegalMoves()) &&
-                Objects.equals(getErrorMessage(), that.getErrorMessage());
+                Objects.equals(getErrorMessage(), that.getErrorMessage()) &&
+                Objects.equals(getMove(), that.getMove()) &&
+                Objects.equals(getPly(), that.getPly()) &&
+                Objects.equals(getPositionKey(), that.getPositionKey());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getServerMessageType(), getMessage(), getGame(), getPlayerColor(), getLegalMoves(), getErrorMessage());
+        return Objects.hash(getServerMessageType(), getMessage(), getGame(), getFen(), getPlayerColor(), getLegalMoves(),
+                getErrorMessage(), getMove(), getPly(), getPositionKey());
     }
 }
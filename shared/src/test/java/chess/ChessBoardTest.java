@@ -0,0 +1,180 @@
+package chess;
+
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChessBoardTest {
+
+    //promotions and captures come up within a few moves of this one
+    static final String PROMOTIONS = "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N w";
+
+    @Test
+    void makeUnmakeRestoresPositive() {
+        Random random = new Random(1);
+        for (String fen : new String[]{PROMOTIONS, Perft.STANDARD_POSITIONS.get(2).fen()}) {
+            for (int game = 0; game < 20; game++) {
+                ChessBoard board = ChessGame.fromFen(fen).getBoard();
+                ChessGame.TeamColor turn = ChessGame.fromFen(fen).getTeamTurn();
+                ChessBoard[] before = new ChessBoard[40];
+                int played = 0;
+                MoveList moves = new MoveList();
+                while (played < before.length) {
+                    moves.clear();
+                    LegalMoveGenerator.generate(board, turn, moves);
+                    if (moves.isEmpty()) {
+                        break;
+                    }
+                    before[played++] = new ChessBoard(board);
+                    board.makeMove(moves.get(random.nextInt(moves.size())));
+                    assertConsistent(board);
+                    turn = turn == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+                }
+                while (played > 0) {
+                    board.unmakeMove();
+                    assertSameBoard(before[--played], board);
+                }
+            }
+        }
+    }
+
+    @Test
+    void unmakePromotionCapturePositive() {
+        ChessBoard board = ChessGame.fromFen(PROMOTIONS).getBoard();
+        ChessBoard before = new ChessBoard(board);
+        //b7 takes the knight on a8 and promotes
+        board.makeMove(ChessMove.of(ChessPosition.of(7, 2), ChessPosition.of(8, 1), ChessPiece.PieceType.QUEEN));
+        assertEquals(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN),
+                board.getPiece(ChessPosition.of(8, 1)));
+        assertNull(board.getPiece(ChessPosition.of(7, 2)));
+
+        board.unmakeMove();
+        assertSameBoard(before, board);
+        assertEquals(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN),
+                board.getPiece(ChessPosition.of(7, 2)));
+    }
+
+    @Test
+    void unmakeKingMovePositive() {
+        ChessBoard board = ChessGame.fromFen("8/8/8/8/8/8/8/K6k w").getBoard();
+        board.makeMove(ChessMove.of(ChessPosition.of(1, 1), ChessPosition.of(2, 2), null));
+        assertEquals(ChessPosition.of(2, 2), board.getKingPosition(ChessGame.TeamColor.WHITE));
+
+        board.unmakeMove();
+        assertEquals(ChessPosition.of(1, 1), board.getKingPosition(ChessGame.TeamColor.WHITE));
+        assertEquals(ChessPosition.of(1, 8), board.getKingPosition(ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    void unmakeWithoutMoveNegative() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        assertThrows(IllegalStateException.class, board::unmakeMove);
+    }
+
+    @Test
+    void gameMovesKeepNoUndoNegative() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        game.makeMove(ChessMove.of(ChessPosition.of(7, 5), ChessPosition.of(5, 5), null));
+        //moves a game commits leave no undo records behind
+        assertThrows(IllegalStateException.class, game.getBoard()::unmakeMove);
+    }
+
+    @Test
+    void offBoardNegative() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        //column 9 of row 1 would otherwise alias a2, row 0 would index before a1
+        assertThrows(IllegalArgumentException.class, () -> board.getPiece(new ChessPosition(1, 9)));
+        assertThrows(IllegalArgumentException.class, () -> board.getPiece(new ChessPosition(0, 5)));
+        assertThrows(IllegalArgumentException.class, () -> board.addPiece(new ChessPosition(0, 5),
+                new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN)));
+
+        ChessGame game = new ChessGame();
+        assertThrows(InvalidMoveException.class, () -> game.makeMove(
+                new ChessMove(new ChessPosition(1, 9), new ChessPosition(2, 9), null)));
+        assertThrows(InvalidMoveException.class, () -> game.makeMove(
+                new ChessMove(new ChessPosition(2, 5), new ChessPosition(0, 5), null)));
+        assertEquals(ChessGame.TeamColor.WHITE, game.getTeamTurn());
+        assertEquals(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN),
+                game.getBoard().getPiece(ChessPosition.of(2, 1)));
+    }
+
+    @Test
+    void squareAttackedStartPositive() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        for (int col = 1; col <= 8; col++) {
+            assertTrue(board.isSquareAttacked(ChessPosition.of(3, col), ChessGame.TeamColor.WHITE));
+            assertFalse(board.isSquareAttacked(ChessPosition.of(4, col), ChessGame.TeamColor.WHITE));
+            assertFalse(board.isSquareAttacked(ChessPosition.of(5, col), ChessGame.TeamColor.BLACK));
+            assertTrue(board.isSquareAttacked(ChessPosition.of(6, col), ChessGame.TeamColor.BLACK));
+        }
+        //a1 is only defended by its own side
+        assertFalse(board.isSquareAttacked(ChessPosition.of(1, 1), ChessGame.TeamColor.WHITE));
+    }
+
+    @Test
+    void squareAttackedBlockedPositive() {
+        ChessBoard board = ChessGame.fromFen("k7/8/8/3p4/N7/8/8/R6K w").getBoard();
+        //the rook stops at the knight
+        assertTrue(board.isSquareAttacked(ChessPosition.of(3, 1), ChessGame.TeamColor.WHITE));
+        assertTrue(board.isSquareAttacked(ChessPosition.of(4, 1), ChessGame.TeamColor.WHITE));
+        assertFalse(board.isSquareAttacked(ChessPosition.of(5, 1), ChessGame.TeamColor.WHITE));
+        assertFalse(board.isSquareAttacked(ChessPosition.of(8, 1), ChessGame.TeamColor.WHITE));
+        assertTrue(board.isSquareAttacked(ChessPosition.of(1, 7), ChessGame.TeamColor.WHITE));
+        //knight and king
+        assertTrue(board.isSquareAttacked(ChessPosition.of(6, 2), ChessGame.TeamColor.WHITE));
+        assertTrue(board.isSquareAttacked(ChessPosition.of(2, 8), ChessGame.TeamColor.WHITE));
+        //black pawns attack downwards and never straight ahead
+        assertTrue(board.isSquareAttacked(ChessPosition.of(4, 3), ChessGame.TeamColor.BLACK));
+        assertTrue(board.isSquareAttacked(ChessPosition.of(4, 5), ChessGame.TeamColor.BLACK));
+        assertFalse(board.isSquareAttacked(ChessPosition.of(4, 4), ChessGame.TeamColor.BLACK));
+        assertFalse(board.isSquareAttacked(ChessPosition.of(6, 3), ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    void squareAttackedAfterMovePositive() {
+        ChessBoard board = ChessGame.fromFen("k7/8/8/3p4/N7/8/8/R6K w").getBoard();
+        int a8 = Bitboards.square(8, 1);
+        assertFalse(board.isSquareAttacked(a8, ChessGame.TeamColor.WHITE));
+        //the knight steps off the file and opens it for the rook
+        board.makeMove(ChessMove.of(ChessPosition.of(4, 1), ChessPosition.of(6, 2), null));
+        assertTrue(board.isSquareAttacked(a8, ChessGame.TeamColor.WHITE));
+        board.unmakeMove();
+        assertFalse(board.isSquareAttacked(a8, ChessGame.TeamColor.WHITE));
+    }
+
+    //the bitboards, mailbox and king squares of a board must agree with each other
+    static void assertConsistent(ChessBoard board) {
+        for (int square = 0; square < 64; square++) {
+            int piece = board.pieceAt(square);
+            for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+                for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+                    boolean set = (board.pieces(color, type) & (1L << square)) != 0;
+                    assertEquals(piece == ChessBoard.pieceIndex(color, type), set,
+                            "square " + square + " " + color + " " + type);
+                }
+            }
+        }
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            long kings = board.pieces(color, ChessPiece.PieceType.KING);
+            assertEquals(kings == 0 ? ChessBoard.NO_SQUARE : Long.numberOfTrailingZeros(kings),
+                    board.kingSquare(color));
+        }
+    }
+
+    static void assertSameBoard(ChessBoard expected, ChessBoard actual) {
+        assertEquals(expected, actual);
+        for (int square = 0; square < 64; square++) {
+            assertEquals(expected.pieceAt(square), actual.pieceAt(square), "square " + square);
+        }
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            assertEquals(expected.kingSquare(color), actual.kingSquare(color));
+        }
+        assertEquals(expected.zobristKey(), actual.zobristKey());
+    }
+}
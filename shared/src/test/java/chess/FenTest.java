@@ -0,0 +1,57 @@
+package chess;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FenTest {
+
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1";
+
+    @Test
+    void startPositionPositive() {
+        assertEquals(START, new ChessGame().toFen());
+        assertEquals(new ChessGame(), ChessGame.fromFen(START));
+    }
+
+    @Test
+    void roundTripPositive() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        game.makeMove(ChessMove.of(ChessPosition.of(8, 7), ChessPosition.of(6, 6), null));
+        game.makeMove(ChessMove.of(ChessPosition.of(1, 4), ChessPosition.of(5, 8), null));
+
+        String fen = game.toFen();
+        assertEquals("rnbqkb1r/pppppppp/5n2/7Q/4P3/8/PPPP1PPP/RNB1KBNR b - - 0 1", fen);
+        ChessGame loaded = ChessGame.fromFen(fen);
+        assertEquals(game, loaded);
+        assertEquals(game.positionKey(), loaded.positionKey());
+    }
+
+    @Test
+    void placementAndSideOnlyPositive() {
+        ChessGame game = ChessGame.fromFen("8/8/8/8/8/8/8/K6k b");
+        assertEquals(ChessGame.TeamColor.BLACK, game.getTeamTurn());
+        assertEquals("8/8/8/8/8/8/8/K6k b - - 0 1", game.toFen());
+    }
+
+    @Test
+    void fromFenNegative() {
+        assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen(""));
+        assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen("8/8/8/8/8/8/8 w"));
+        assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen("9/8/8/8/8/8/8/8 w"));
+        assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen("8/8/8/8/8/8/8/K7k w"));
+        assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen("8/8/8/8/8/8/8/7x w"));
+        assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen("8/8/8/8/8/8/8/8 x"));
+    }
+
+    @Test
+    void malformedSideNegative() {
+        assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen("8/8/8/8/8/8/8/K6k wx"));
+        assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen("8/8/8/8/8/8/8/K6k bb - - 0 1"));
+        assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen("8/8/8/8/8/8/8/K6k W"));
+        assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen("8/8/8/8/8/8/8/K6k white"));
+        assertEquals(ChessGame.TeamColor.BLACK, ChessGame.fromFen("8/8/8/8/8/8/8/K6k b - - 0 1").getTeamTurn());
+        assertEquals(ChessGame.TeamColor.WHITE, ChessGame.fromFen("8/8/8/8/8/8/8/K6k   w  ").getTeamTurn());
+    }
+}
@@ -0,0 +1,70 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.*;
+
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InterningTest {
+
+    @Test
+    void positionOfSameInstancePositive() {
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition position = ChessPosition.of(row, col);
+                assertSame(position, ChessPosition.of(row, col));
+                assertEquals(new ChessPosition(row, col), position);
+                assertEquals(row, position.getRow());
+                assertEquals(col, position.getColumn());
+            }
+        }
+    }
+
+    @Test
+    void moveOfSameInstancePositive() {
+        ChessPosition from = ChessPosition.of(7, 1);
+        ChessPosition to = ChessPosition.of(8, 1);
+        for (ChessPiece.PieceType promotion : new ChessPiece.PieceType[]{null, ChessPiece.PieceType.QUEEN,
+                ChessPiece.PieceType.KNIGHT}) {
+            ChessMove move = ChessMove.of(from, to, promotion);
+            assertSame(move, ChessMove.of(from, to, promotion));
+            //built from equal but separate positions
+            assertSame(move, ChessMove.of(new ChessPosition(7, 1), new ChessPosition(8, 1), promotion));
+            assertEquals(new ChessMove(from, to, promotion), move);
+        }
+        assertNotSame(ChessMove.of(from, to, null), ChessMove.of(from, to, ChessPiece.PieceType.QUEEN));
+    }
+
+    @Test
+    void generatedMovesInternedPositive() {
+        Collection<ChessMove> moves = new ChessGame().validMoves(ChessPosition.of(2, 5));
+        for (ChessMove move : moves) {
+            assertSame(ChessMove.of(move.getStartPosition(), move.getEndPosition(), move.getPromotionPiece()), move);
+            assertSame(ChessPosition.of(move.getEndPosition().getRow(), move.getEndPosition().getColumn()),
+                    move.getEndPosition());
+        }
+    }
+
+    @Test
+    void offBoardNotCachedNegative() {
+        ChessPosition offBoard = ChessPosition.of(0, 9);
+        assertNotSame(offBoard, ChessPosition.of(0, 9));
+        assertEquals(offBoard, ChessPosition.of(0, 9));
+
+        ChessMove move = ChessMove.of(ChessPosition.of(1, 1), offBoard, null);
+        assertNotSame(move, ChessMove.of(ChessPosition.of(1, 1), offBoard, null));
+        assertEquals(move, ChessMove.of(ChessPosition.of(1, 1), offBoard, null));
+    }
+
+    @Test
+    void readMoveUnknownPromotionNegative() {
+        Gson gson = new Gson();
+        String json = "{\"start\":{\"row\":7,\"col\":1},\"end\":{\"row\":8,\"col\":1},\"type\":%s}";
+        assertSame(ChessMove.of(ChessPosition.of(7, 1), ChessPosition.of(8, 1), ChessPiece.PieceType.QUEEN),
+                gson.fromJson(json.formatted("\"QUEEN\""), ChessMove.class));
+        assertThrows(JsonParseException.class, () -> gson.fromJson(json.formatted("\"DRAGON\""), ChessMove.class));
+    }
+}
@@ -0,0 +1,41 @@
+package chess;
+
+import org.junit.jupiter.api.*;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PerftTest {
+
+    @Test
+    void standardPositionsPositive() {
+        for (Perft.Position position : Perft.STANDARD_POSITIONS) {
+            for (int depth = 1; depth <= position.nodes().length; depth++) {
+                assertEquals(position.nodes()[depth - 1], Perft.perft(ChessGame.fromFen(position.fen()), depth),
+                        position.name() + " depth " + depth);
+            }
+        }
+    }
+
+    @Test
+    void parallelDivideMatchesSequential() {
+        ChessGame game = new ChessGame();
+        Map<ChessMove, Long> sequential = Perft.divide(game, 3);
+        Map<ChessMove, Long> parallel = Perft.divide(game, 3, ForkJoinPool.commonPool());
+
+        assertEquals(20, sequential.size());
+        assertEquals(sequential, parallel);
+        assertEquals(8_902L, parallel.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    void perftLeavesBoardUnchanged() {
+        ChessGame game = new ChessGame();
+        long key = game.positionKey();
+        Perft.perft(game, 3);
+        assertEquals(new ChessGame(), game);
+        assertEquals(key, game.positionKey());
+    }
+}
@@ -0,0 +1,80 @@
+package chess;
+
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZobristTest {
+
+    @Test
+    void incrementalMatchesRecomputedPositive() {
+        Random random = new Random(7);
+        int captures = 0;
+        int promotions = 0;
+        for (String fen : new String[]{ChessBoardTest.PROMOTIONS, Perft.STANDARD_POSITIONS.get(2).fen(),
+                Perft.STANDARD_POSITIONS.get(0).fen()}) {
+            for (int game = 0; game < 30; game++) {
+                ChessGame chessGame = ChessGame.fromFen(fen);
+                ChessBoard board = chessGame.getBoard();
+                ChessGame.TeamColor turn = chessGame.getTeamTurn();
+                MoveList moves = new MoveList();
+                for (int ply = 0; ply < 60; ply++) {
+                    moves.clear();
+                    LegalMoveGenerator.generate(board, turn, moves);
+                    if (moves.isEmpty()) {
+                        break;
+                    }
+                    int move = moves.get(random.nextInt(moves.size()));
+                    captures += PackedMove.hasFlag(move, PackedMove.CAPTURE) ? 1 : 0;
+                    promotions += PackedMove.promotion(move) != null ? 1 : 0;
+                    board.makeMove(move);
+                    assertEquals(recompute(board), board.zobristKey());
+                    turn = turn == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+                }
+            }
+        }
+        assertTrue(captures > 0);
+        assertTrue(promotions > 0);
+    }
+
+    @Test
+    void transpositionSameKeyPositive() throws InvalidMoveException {
+        ChessGame knightsFirst = new ChessGame();
+        knightsFirst.makeMove(ChessMove.of(ChessPosition.of(1, 2), ChessPosition.of(3, 3), null));
+        knightsFirst.makeMove(ChessMove.of(ChessPosition.of(8, 2), ChessPosition.of(6, 3), null));
+        knightsFirst.makeMove(ChessMove.of(ChessPosition.of(1, 7), ChessPosition.of(3, 6), null));
+        knightsFirst.makeMove(ChessMove.of(ChessPosition.of(8, 7), ChessPosition.of(6, 6), null));
+
+        ChessGame otherOrder = new ChessGame();
+        otherOrder.makeMove(ChessMove.of(ChessPosition.of(1, 7), ChessPosition.of(3, 6), null));
+        otherOrder.makeMove(ChessMove.of(ChessPosition.of(8, 7), ChessPosition.of(6, 6), null));
+        otherOrder.makeMove(ChessMove.of(ChessPosition.of(1, 2), ChessPosition.of(3, 3), null));
+        otherOrder.makeMove(ChessMove.of(ChessPosition.of(8, 2), ChessPosition.of(6, 3), null));
+
+        assertEquals(knightsFirst.positionKey(), otherOrder.positionKey());
+        assertEquals(knightsFirst.positionKey(), ChessGame.fromFen(knightsFirst.toFen()).positionKey());
+    }
+
+    @Test
+    void sideToMoveChangesKeyNegative() {
+        ChessGame white = new ChessGame();
+        ChessGame black = new ChessGame();
+        black.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertNotEquals(white.positionKey(), black.positionKey());
+        assertEquals(white.getBoard().zobristKey(), black.getBoard().zobristKey());
+    }
+
+    //the key straight from the definition, ignoring the incrementally kept one
+    private static long recompute(ChessBoard board) {
+        long key = 0L;
+        for (int square = 0; square < 64; square++) {
+            int piece = board.pieceAt(square);
+            if (piece != ChessBoard.NO_PIECE) {
+                key ^= Zobrist.pieceSquare(piece, square);
+            }
+        }
+        return key;
+    }
+}
@@ -0,0 +1,59 @@
+package chess.codec;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameCodecTest {
+
+    @Test
+    void startPositionRoundTripPositive() {
+        ChessGame game = new ChessGame();
+        byte[] bytes = GameCodec.encode(game);
+
+        assertEquals(26, bytes.length);
+        assertEquals(game, GameCodec.decode(bytes));
+        assertTrue(bytes.length < new Gson().toJson(game).length() / 10);
+    }
+
+    @Test
+    void sideToMoveAndGameOverRoundTripPositive() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        game.setGameOver(true);
+
+        ChessGame decoded = GameCodec.decode(GameCodec.encode(game));
+        assertEquals(ChessGame.TeamColor.BLACK, decoded.getTeamTurn());
+        assertTrue(decoded.isGameOver());
+        assertEquals(game.getBoard(), decoded.getBoard());
+        assertEquals(game.positionKey(), decoded.positionKey());
+    }
+
+    @Test
+    void oddPieceCountRoundTripPositive() {
+        ChessGame game = new ChessGame();
+        game.getBoard().addPiece(ChessPosition.of(1, 1), null);
+        ChessGame decoded = GameCodec.decode(GameCodec.encode(game));
+
+        assertNull(decoded.getBoard().getPiece(ChessPosition.of(1, 1)));
+        assertEquals(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT),
+                decoded.getBoard().getPiece(ChessPosition.of(1, 2)));
+        assertEquals(game.getBoard(), decoded.getBoard());
+    }
+
+    @Test
+    void decodeNegative() {
+        byte[] bytes = GameCodec.encode(new ChessGame());
+        bytes[0] = 99;
+        assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(bytes));
+        assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(new byte[3]));
+        assertThrows(IllegalArgumentException.class,
+                () -> GameCodec.decode(new Gson().toJson(new ChessGame()).getBytes()));
+    }
+}
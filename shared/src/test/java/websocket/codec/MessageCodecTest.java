@@ -0,0 +1,87 @@
+package websocket.codec;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.*;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ServerMessage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageCodecTest {
+    private static final ChessMove PROMOTION =
+            ChessMove.of(ChessPosition.of(7, 1), ChessPosition.of(8, 1), ChessPiece.PieceType.QUEEN);
+
+    private static UserGameCommand roundTrip(UserGameCommand command) {
+        byte[] bytes = MessageCodec.encodeCommand(command);
+        return MessageCodec.decodeCommand(bytes, 0, bytes.length);
+    }
+
+    private static ServerMessage roundTrip(ServerMessage message) {
+        byte[] bytes = MessageCodec.encodeMessage(message);
+        return MessageCodec.decodeMessage(bytes, 0, bytes.length);
+    }
+
+    @Test
+    void commandRoundTripPositive() {
+        var connect = new UserGameCommand(UserGameCommand.CommandType.CONNECT, "token", 12,
+                UserGameCommand.BoardFormat.MOVES);
+        var move = new UserGameCommand(UserGameCommand.CommandType.MAKE_MOVE, "token", 12, PROMOTION);
+        var resign = new UserGameCommand(UserGameCommand.CommandType.RESIGN, null, 12);
+        assertEquals(connect, roundTrip(connect));
+        assertEquals(move, roundTrip(move));
+        assertEquals(resign, roundTrip(resign));
+    }
+
+    @Test
+    void messageRoundTripPositive() {
+        String fen = new ChessGame().toFen();
+        var loadGame = ServerMessage.loadGameFen(fen, "WHITE", 3);
+        var loadGameNoPly = ServerMessage.loadGameFen(fen, null);
+        var moveApplied = ServerMessage.moveApplied(PROMOTION, 41, 0x8000_0000_0000_0001L);
+        var notification = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, "white moved é");
+        var error = new ServerMessage(ServerMessage.ServerMessageType.ERROR, "Invalid move.");
+        assertEquals(loadGame, roundTrip(loadGame));
+        assertEquals(loadGameNoPly, roundTrip(loadGameNoPly));
+        assertEquals(moveApplied, roundTrip(moveApplied));
+        assertEquals(notification, roundTrip(notification));
+        assertEquals(error, roundTrip(error));
+        assertEquals(33, MessageCodec.encodeMessage(loadGame).length);
+    }
+
+    @Test
+    void offsetFramePositive() {
+        byte[] command = MessageCodec.encodeCommand(
+                new UserGameCommand(UserGameCommand.CommandType.LEAVE, "token", 5));
+        byte[] framed = new byte[command.length + 4];
+        System.arraycopy(command, 0, framed, 2, command.length);
+        assertEquals(5, MessageCodec.decodeCommand(framed, 2, command.length).getGameID());
+    }
+
+    @Test
+    void decodeNegative() {
+        byte[] command = MessageCodec.encodeCommand(
+                new UserGameCommand(UserGameCommand.CommandType.CONNECT, "token", 5));
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.decodeCommand(command, 0, command.length - 1));
+        command[0] = 9;
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.decodeCommand(command, 0, command.length));
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.decodeMessage(new byte[]{1, 42}, 0, 2));
+        //a board without whose turn it is has no binary form
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.encodeMessage(new ServerMessage(
+                ServerMessage.ServerMessageType.LOAD_GAME, new ChessGame().getBoard(), null)));
+    }
+
+    @Test
+    void unknownPromotionNegative() {
+        byte[] command = MessageCodec.encodeCommand(
+                new UserGameCommand(UserGameCommand.CommandType.MAKE_MOVE, "token", 5, PROMOTION));
+        byte[] message = MessageCodec.encodeMessage(ServerMessage.moveApplied(PROMOTION, 1, 0L));
+        //promotion code 7 in bits 12-14 of the move's high byte
+        command[command.length - 2] |= 0x70;
+        message[2] |= 0x70;
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.decodeCommand(command, 0, command.length));
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.decodeMessage(message, 0, message.length));
+    }
+}
@@ -0,0 +1,53 @@
+package websocket.messages;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerMessageTest {
+    private static final Gson GSON = new Gson();
+
+    @Test
+    void moveAppliedFollowsGamePositive() throws InvalidMoveException {
+        ChessGame server = new ChessGame();
+        ChessGame client = ChessGame.fromFen(GSON.fromJson(
+                GSON.toJson(ServerMessage.loadGameFen(server.toFen(), "WHITE", 0)), ServerMessage.class).getFen());
+        ChessMove move = ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+        server.makeMove(move);
+
+        ServerMessage received = GSON.fromJson(
+                GSON.toJson(ServerMessage.moveApplied(move, 1, server.positionKey())), ServerMessage.class);
+        assertEquals(ServerMessage.ServerMessageType.MOVE_APPLIED, received.getServerMessageType());
+        assertEquals(1, received.getPly());
+        client.makeMove(received.getMove());
+        assertEquals(received.getPositionKey(), client.positionKey());
+    }
+
+    @Test
+    void negativePositionKeyRoundTripPositive() {
+        ServerMessage sent = ServerMessage.moveApplied(
+                ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null), 7, -42L);
+        ServerMessage received = GSON.fromJson(GSON.toJson(sent), ServerMessage.class);
+        assertEquals(-42L, received.getPositionKey());
+        assertEquals(sent, received);
+    }
+
+    @Test
+    void missedMoveNegative() throws InvalidMoveException {
+        ChessGame server = new ChessGame();
+        ChessGame client = new ChessGame();
+        server.makeMove(ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        ChessMove reply = ChessMove.of(ChessPosition.of(7, 5), ChessPosition.of(5, 5), null);
+        server.makeMove(reply);
+
+        //the client never saw the first move, so its copy can't match
+        ServerMessage received = ServerMessage.moveApplied(reply, 2, server.positionKey());
+        assertThrows(InvalidMoveException.class, () -> client.makeMove(received.getMove()));
+        assertNotEquals(received.getPositionKey(), client.positionKey());
+    }
+}